@@ -0,0 +1,108 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.AppApplication;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.repository.memory.UserBookMemoryStore;
+import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.request.UserRequest;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Application context and test data for the benchmarks.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Starting the application without web server on a fresh embedded H2 database.
+     * Logging and the user book cache are turned off, so the database work is measured.
+     * The default data is deleted, so the benchmarks start with empty tables.
+     * Properties are passed as command line arguments, so they override application.yaml,
+     * additional properties override the defaults with the same name.
+     * @param properties additional application properties.
+     * @return ConfigurableApplicationContext started context.
+     */
+    static ConfigurableApplicationContext startContext(String... properties) {
+        Map<String, String> allProperties = new LinkedHashMap<>();
+        Stream.concat(Stream.of(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "logging.level.com.edu.ulab.app=WARN",
+                        "user-book.cache.enabled=false"), Stream.of(properties))
+                .forEach(property -> allProperties.put(property.substring(0, property.indexOf('=')), property));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(AppApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(allProperties.values().stream().map(property -> "--" + property).toArray(String[]::new));
+        // default data has fixed IDs, which are reached by the generated IDs of a long benchmark
+        deleteAllUsers(context);
+
+        return context;
+    }
+
+    /**
+     * Deleting all users with their books from the database and from the memory store of the memory backend.
+     * @param context started context.
+     */
+    static void deleteAllUsers(ConfigurableApplicationContext context) {
+        context.getBean(JdbcTemplate.class).update("DELETE FROM PERSON");
+        context.getBeanProvider(UserBookMemoryStore.class).ifAvailable(UserBookMemoryStore::clear);
+    }
+
+    static UserDto userDto() {
+        return UserDto.builder()
+                .fullName("Benchmark User")
+                .title("reader")
+                .age(42)
+                .build();
+    }
+
+    static List<BookDto> bookDtos(long userId, int count) {
+        List<BookDto> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(BookDto.builder()
+                    .userId(userId)
+                    .title("Book " + i)
+                    .author("Author " + i)
+                    .pageCount(100 + i)
+                    .build());
+        }
+        return books;
+    }
+
+    static UserBookRequest userBookRequest(int booksCount) {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setFullName("Benchmark User");
+        userRequest.setTitle("reader");
+        userRequest.setAge(42);
+
+        List<BookRequest> bookRequests = new ArrayList<>(booksCount);
+        for (int i = 0; i < booksCount; i++) {
+            BookRequest bookRequest = new BookRequest();
+            bookRequest.setTitle("Book " + i);
+            bookRequest.setAuthor("Author " + i);
+            bookRequest.setPageCount(100 + i);
+            bookRequests.add(bookRequest);
+        }
+
+        UserBookRequest userBookRequest = new UserBookRequest();
+        userBookRequest.setUserRequest(userRequest);
+        userBookRequest.setBookRequests(bookRequests);
+        return userBookRequest;
+    }
+}
@@ -0,0 +1,89 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full UserDataFacade flows: mapping, validation, transaction and the services of the backend.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FacadeBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Facade {
+        @Param({"jdbc", "jpa", "memory"})
+        public String backend;
+
+        @Param({"1", "10", "100"})
+        public int booksPerUser;
+
+        ConfigurableApplicationContext context;
+        UserDataFacade userDataFacade;
+        UserBookRequest request;
+
+        @Setup(Level.Trial)
+        public void startContext() {
+            context = BenchmarkData.startContext("user-book.backend=" + backend);
+            userDataFacade = context.getBean(UserDataFacade.class);
+            request = BenchmarkData.userBookRequest(booksPerUser);
+        }
+
+        @TearDown(Level.Iteration)
+        public void deleteAllUsers() {
+            BenchmarkData.deleteAllUsers(context);
+        }
+
+        @TearDown(Level.Trial)
+        public void closeContext() {
+            context.close();
+        }
+    }
+
+    /**
+     * User with books of the benchmark thread, created again for every iteration.
+     */
+    @State(Scope.Thread)
+    public static class StoredUser {
+        long userId;
+
+        @Setup(Level.Iteration)
+        public void createUser(Facade facade) {
+            userId = facade.userDataFacade.createUserWithBooks(facade.request).getUserId();
+        }
+    }
+
+    @Benchmark
+    public UserBookResponse createUserWithBooks(Facade facade) {
+        return facade.userDataFacade.createUserWithBooks(facade.request);
+    }
+
+    @Benchmark
+    public UserBookResponse getUserWithBooks(Facade facade, StoredUser storedUser) {
+        return facade.userDataFacade.getUserWithBooks(storedUser.userId);
+    }
+
+    @Benchmark
+    public UserBookResponse updateUserWithBooks(Facade facade, StoredUser storedUser) {
+        return facade.userDataFacade.updateUserWithBooks(facade.request, storedUser.userId, null, false);
+    }
+
+    /**
+     * Delete needs a stored user for every call, so the user is created in the same operation.
+     * Subtract the createUserWithBooks score to get the cost of the delete.
+     */
+    @Benchmark
+    public long createAndDeleteUserWithBooks(Facade facade) {
+        Long userId = facade.userDataFacade.createUserWithBooks(facade.request).getUserId();
+        facade.userDataFacade.deleteUserWithBooks(userId);
+        return userId;
+    }
+}
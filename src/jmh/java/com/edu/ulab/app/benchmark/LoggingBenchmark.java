@@ -0,0 +1,90 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the facade flows with the default INFO logging, the dev profile and the prod profile.
+ * The console output is redirected to a file, so the cost of writing the log lines is measured without the terminal.
+ * In the prod profile the async appender drops INFO events when its queue is full instead of blocking.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Facade {
+        /**
+         * info - the default logging, summaries at INFO level with the synchronous console appender,
+         * dev - the dev profile with payloads at DEBUG level, prod - the prod profile.
+         */
+        @Param({"info", "dev", "prod"})
+        public String logging;
+
+        @Param({"10"})
+        public int booksPerUser;
+
+        ConfigurableApplicationContext context;
+        UserDataFacade userDataFacade;
+        UserBookRequest request;
+        PrintStream systemOut;
+        PrintStream logOut;
+        long storedUserId;
+
+        @Setup(Level.Trial)
+        public void startContext(BenchmarkParams params) throws FileNotFoundException {
+            String benchmarkName = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1);
+            systemOut = System.out;
+            logOut = new PrintStream(new BufferedOutputStream(
+                    new FileOutputStream("target/logging-benchmark-" + benchmarkName + "-" + logging + ".log")), false);
+            System.setOut(logOut);
+
+            context = switch (logging) {
+                case "prod" -> BenchmarkData.startContext("spring.profiles.active=prod",
+                        "logging.level.root=INFO", "logging.level.com.edu.ulab.app=INFO");
+                case "dev" -> BenchmarkData.startContext("spring.profiles.active=dev",
+                        "logging.level.root=INFO", "logging.level.com.edu.ulab.app=DEBUG");
+                default -> BenchmarkData.startContext("logging.level.root=INFO", "logging.level.com.edu.ulab.app=INFO");
+            };
+            userDataFacade = context.getBean(UserDataFacade.class);
+            request = BenchmarkData.userBookRequest(booksPerUser);
+            storedUserId = userDataFacade.createUserWithBooks(request).getUserId();
+        }
+
+        @TearDown(Level.Iteration)
+        public void deleteOtherUsers() {
+            context.getBean(JdbcTemplate.class).update("DELETE FROM PERSON WHERE ID <> ?", storedUserId);
+        }
+
+        @TearDown(Level.Trial)
+        public void closeContext() {
+            context.close();
+            System.setOut(systemOut);
+            logOut.close();
+        }
+    }
+
+    @Benchmark
+    public UserBookResponse createUserWithBooks(Facade facade) {
+        return facade.userDataFacade.createUserWithBooks(facade.request);
+    }
+
+    @Benchmark
+    public UserBookResponse getUserWithBooks(Facade facade) {
+        return facade.userDataFacade.getUserWithBooks(facade.storedUserId);
+    }
+}
@@ -0,0 +1,104 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JPA (UserServiceImpl, BookServiceImpl), JdbcTemplate (UserServiceImplTemplate,
+ * BookServiceImplTemplate) and memory (UserServiceImplMemory, BookServiceImplMemory) service implementations
+ * on create, get, update and delete of a user with books. The memory backend is the baseline without the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Services {
+        @Param({"jpa", "jdbc", "memory"})
+        public String backend;
+
+        @Param({"1", "10", "100"})
+        public int booksPerUser;
+
+        ConfigurableApplicationContext context;
+        UserService userService;
+        BookService bookService;
+
+        @Setup(Level.Trial)
+        public void startContext() {
+            context = BenchmarkData.startContext("user-book.backend=" + backend);
+            userService = context.getBean(UserService.class);
+            bookService = context.getBean(BookService.class);
+        }
+
+        @TearDown(Level.Iteration)
+        public void deleteAllUsers() {
+            BenchmarkData.deleteAllUsers(context);
+        }
+
+        @TearDown(Level.Trial)
+        public void closeContext() {
+            context.close();
+        }
+
+        long createUserWithBooks() {
+            UserDto user = userService.createUser(BenchmarkData.userDto());
+            bookService.createBooks(BenchmarkData.bookDtos(user.getId(), booksPerUser));
+            return user.getId();
+        }
+    }
+
+    /**
+     * User with books of the benchmark thread, created again for every iteration.
+     */
+    @State(Scope.Thread)
+    public static class StoredUser {
+        long userId;
+
+        @Setup(Level.Iteration)
+        public void createUser(Services services) {
+            userId = services.createUserWithBooks();
+        }
+    }
+
+    @Benchmark
+    public long create(Services services) {
+        return services.createUserWithBooks();
+    }
+
+    @Benchmark
+    public List<Long> get(Services services, StoredUser storedUser) {
+        UserDto user = services.userService.getUserById(storedUser.userId);
+        return services.bookService.findAllBooksIdByUserId(user.getId());
+    }
+
+    @Benchmark
+    public List<BookDto> update(Services services, StoredUser storedUser) {
+        UserDto user = BenchmarkData.userDto();
+        user.setId(storedUser.userId);
+        services.userService.updateUser(user);
+        services.bookService.deleteBooksByUserId(storedUser.userId);
+        return services.bookService.createBooks(BenchmarkData.bookDtos(storedUser.userId, services.booksPerUser));
+    }
+
+    /**
+     * Delete needs a stored user for every call, so the user is created in the same operation.
+     * Subtract the create score to get the cost of the delete.
+     */
+    @Benchmark
+    public long createAndDelete(Services services) {
+        long userId = services.createUserWithBooks();
+        services.userService.deleteUserById(userId);
+        return userId;
+    }
+}
@@ -0,0 +1,125 @@
+package com.edu.ulab.app.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies in microseconds and response statuses of the operations of one load phase.
+ * Latencies are recorded to HdrHistogram recorders from the response threads,
+ * the percentile distributions are written in the HdrHistogram .hgrm format, so the runs can be plotted and compared.
+ */
+final class LatencyReport {
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, Map<Integer, LongAdder>> statuses = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Histogram total = new Histogram(3);
+    private long elapsedNanos;
+
+    LatencyReport() {
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(3));
+            statuses.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * @param operation operation of the request.
+     * @param status HTTP status, 0 if no response was received.
+     * @param latencyNanos time from the scheduled send to the response.
+     */
+    void record(Operation operation, int status, long latencyNanos) {
+        recorders.get(operation).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        statuses.get(operation).computeIfAbsent(status, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Collecting the recorded latencies after the last response of the phase.
+     * @param elapsedNanos time from the first scheduled send to the last response.
+     */
+    void complete(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            histograms.put(operation, histogram);
+            total.add(histogram);
+        }
+    }
+
+    /**
+     * @param settings settings of the load test.
+     * @return String table of the throughput, latency percentiles in milliseconds and statuses of every operation.
+     */
+    String summary(LoadTestSettings settings) {
+        StringBuilder summary = new StringBuilder()
+                .append(String.format("Load test %s: rate %.1f/s, duration %s, clients %d, mix %s, books %d, properties %s%n",
+                        settings.label(), settings.rate(), settings.duration(), settings.clients(), settings.mix(),
+                        settings.books(), settings.appProperties()))
+                .append(String.format("%-9s %8s %10s %9s %9s %9s %9s %9s  %s%n",
+                        "operation", "count", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "statuses"));
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = histograms.get(operation);
+            if (histogram.getTotalCount() > 0) {
+                appendRow(summary, operation.name().toLowerCase(Locale.ROOT), histogram, statusCounts(operation));
+            }
+        }
+        appendRow(summary, "all", total, "");
+
+        return summary.toString();
+    }
+
+    /**
+     * Writing the summary and the percentile distribution of every operation to the directory.
+     * @param directory result directory.
+     * @param summary summary of the report.
+     * @throws IOException if the files can't be written.
+     */
+    void write(Path directory, String summary) throws IOException {
+        Files.createDirectories(directory);
+        Files.writeString(directory.resolve("summary.txt"), summary);
+        for (Operation operation : Operation.values()) {
+            if (histograms.get(operation).getTotalCount() > 0) {
+                writeDistribution(directory.resolve(operation.name().toLowerCase(Locale.ROOT) + ".hgrm"), histograms.get(operation));
+            }
+        }
+        writeDistribution(directory.resolve("all.hgrm"), total);
+    }
+
+    private void appendRow(StringBuilder summary, String name, Histogram histogram, String statusCounts) {
+        summary.append(String.format("%-9s %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                name,
+                histogram.getTotalCount(),
+                histogram.getTotalCount() / (elapsedNanos / 1e9),
+                histogram.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(90) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                histogram.getMaxValue() / MICROS_PER_MILLI,
+                statusCounts));
+    }
+
+    private String statusCounts(Operation operation) {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statuses.get(operation).forEach((status, count) -> counts.put(status, count.sum()));
+        return counts.toString();
+    }
+
+    private static void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.edu.ulab.app.loadtest;
+
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop generator of the user controller requests.
+ * Requests are sent by the schedule of the arrival rate whatever the response time, and the latency of a request
+ * is measured from its scheduled time, so a request delayed by the slow responses before it is measured
+ * with its delay and slow periods aren't hidden by fewer requests (no coordinated omission).
+ */
+final class LoadGenerator {
+    private final UserBookClient client;
+    private final LoadTestSettings settings;
+    private final UserIdPool userIds = new UserIdPool();
+    private final Semaphore inFlight;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    LoadGenerator(UserBookClient client, LoadTestSettings settings) {
+        this.client = client;
+        this.settings = settings;
+        this.inFlight = new Semaphore(settings.clients());
+        this.operations = settings.mix().keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int totalWeight = 0;
+        for (int i = 0; i < operations.length; i++) {
+            totalWeight += settings.mix().get(operations[i]);
+            cumulativeWeights[i] = totalWeight;
+        }
+    }
+
+    /**
+     * Creating users before the load, at most clients requests at once.
+     * @param count number of users.
+     */
+    void createInitialUsers(int count) {
+        for (int i = 0; i < count; i++) {
+            inFlight.acquireUninterruptibly();
+            client.create().whenComplete((response, error) -> {
+                try {
+                    if (error == null && response.statusCode() == 200) {
+                        userIds.add(UserBookClient.createdUserId(response));
+                    }
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        awaitInFlight();
+    }
+
+    /**
+     * Sending requests of the operation mix with the arrival rate for the duration and waiting for their responses.
+     * @param duration time of sending.
+     * @return LatencyReport latencies and statuses of the operations.
+     */
+    LatencyReport run(Duration duration) {
+        LatencyReport report = new LatencyReport();
+        double intervalNanos = 1e9 / settings.rate();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long scheduledNanos = start + (long) (i * intervalNanos);
+            if (scheduledNanos >= end) {
+                break;
+            }
+            long delayNanos = scheduledNanos - System.nanoTime();
+            if (delayNanos > 0) {
+                LockSupport.parkNanos(delayNanos);
+            }
+
+            inFlight.acquireUninterruptibly();
+            send(nextOperation(), scheduledNanos, report);
+        }
+        awaitInFlight();
+        report.complete(System.nanoTime() - start);
+
+        return report;
+    }
+
+    private void send(Operation operation, long scheduledNanos, LatencyReport report) {
+        long userId = switch (operation) {
+            case UPDATE, GET -> userIds.random();
+            case DELETE -> userIds.removeRandom();
+            case CREATE -> -1;
+        };
+        Operation sentOperation = operation != Operation.CREATE && userId < 0 ? Operation.CREATE : operation;
+
+        CompletableFuture<HttpResponse<String>> response = switch (sentOperation) {
+            case CREATE -> client.create();
+            case UPDATE -> client.update(userId);
+            case GET -> client.get(userId);
+            case DELETE -> client.delete(userId);
+        };
+        response.whenComplete((completedResponse, error) -> {
+            try {
+                int status = error == null ? completedResponse.statusCode() : 0;
+                report.record(sentOperation, status, System.nanoTime() - scheduledNanos);
+                if (sentOperation == Operation.CREATE && status == 200) {
+                    userIds.add(UserBookClient.createdUserId(completedResponse));
+                } else if (sentOperation == Operation.DELETE && status != 200) {
+                    userIds.add(userId);
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private Operation nextOperation() {
+        int weight = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (weight < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private void awaitInFlight() {
+        inFlight.acquireUninterruptibly(settings.clients());
+        inFlight.release(settings.clients());
+    }
+}
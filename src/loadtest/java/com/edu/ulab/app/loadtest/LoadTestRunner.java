@@ -0,0 +1,61 @@
+package com.edu.ulab.app.loadtest;
+
+import com.edu.ulab.app.AppApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Open-loop load test of the user controller over HTTP.
+ * Starts the application on a random port with a fresh embedded H2 database, creates the initial users,
+ * runs the warmup and the measured phase with the arrival rate and the operation mix of {@link LoadTestSettings},
+ * prints the throughput and latency percentiles and writes them to target/loadtest/{label}.
+ */
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws IOException {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        try (ConfigurableApplicationContext context = startApplication(settings.appProperties())) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            UserBookClient client = new UserBookClient("http://localhost:" + port + "/app/api/v1/user", settings.books());
+            LoadGenerator generator = new LoadGenerator(client, settings);
+
+            generator.createInitialUsers(settings.initialUsers());
+            generator.run(settings.warmup());
+            LatencyReport report = generator.run(settings.duration());
+
+            String summary = report.summary(settings);
+            System.out.print(summary);
+            report.write(Path.of("target", "loadtest", settings.label()), summary);
+        }
+    }
+
+    /**
+     * Starting the application on a random port with a fresh embedded H2 database and without request logging.
+     * Properties are passed as command line arguments, so they override application.yaml,
+     * additional properties override the defaults with the same name.
+     * @param properties additional application properties.
+     * @return ConfigurableApplicationContext started context.
+     */
+    private static ConfigurableApplicationContext startApplication(List<String> properties) {
+        Map<String, String> allProperties = new LinkedHashMap<>();
+        Stream.concat(Stream.of(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "logging.level.com.edu.ulab.app=WARN"), properties.stream())
+                .forEach(property -> allProperties.put(property.substring(0, property.indexOf('=')), property));
+
+        return new SpringApplicationBuilder(AppApplication.class)
+                .run(allProperties.values().stream().map(property -> "--" + property).toArray(String[]::new));
+    }
+}
@@ -0,0 +1,67 @@
+package com.edu.ulab.app.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings of the load test from the system properties, the loadtest Maven profile passes them from its properties.
+ * @param rate arrival rate of the requests per second, requests are sent by the schedule whatever the response time.
+ * @param duration time of the measured phase.
+ * @param warmup time of the phase before the measured one, its results are dropped.
+ * @param clients maximum number of requests in progress, a request over it waits and its wait is measured.
+ * @param mix weights of the operations.
+ * @param initialUsers number of users created before the warmup, so updates, gets and deletes have users.
+ * @param books number of books in the create and update requests.
+ * @param label name of the result directory, for example a commit hash.
+ * @param appProperties additional application properties, for example user-book.backend=jpa.
+ */
+record LoadTestSettings(double rate,
+                        Duration duration,
+                        Duration warmup,
+                        int clients,
+                        Map<Operation, Integer> mix,
+                        int initialUsers,
+                        int books,
+                        String label,
+                        List<String> appProperties) {
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Double.parseDouble(System.getProperty("loadtest.rate", "200")),
+                DurationStyle.detectAndParse(System.getProperty("loadtest.duration", "30s")),
+                DurationStyle.detectAndParse(System.getProperty("loadtest.warmup", "10s")),
+                Integer.parseInt(System.getProperty("loadtest.clients", "64")),
+                parseMix(System.getProperty("loadtest.mix", "create:20,update:20,get:50,delete:10")),
+                Integer.parseInt(System.getProperty("loadtest.initial-users", "1000")),
+                Integer.parseInt(System.getProperty("loadtest.books", "5")),
+                System.getProperty("loadtest.label", "latest"),
+                split(System.getProperty("loadtest.app-properties", "")));
+    }
+
+    /**
+     * @param mix comma separated operation:weight pairs, for example create:20,get:80.
+     * @return Map<Operation, Integer> weights of the operations.
+     */
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String pair : split(mix)) {
+            String[] operationWeight = pair.split(":");
+            weights.put(Operation.valueOf(operationWeight[0].trim().toUpperCase(Locale.ROOT)),
+                    Integer.parseInt(operationWeight[1].trim()));
+        }
+        return weights;
+    }
+
+    private static List<String> split(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toList();
+    }
+}
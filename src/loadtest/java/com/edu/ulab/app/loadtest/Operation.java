@@ -0,0 +1,11 @@
+package com.edu.ulab.app.loadtest;
+
+/**
+ * Operations of the user controller driven by the load test.
+ */
+enum Operation {
+    CREATE,
+    UPDATE,
+    GET,
+    DELETE
+}
@@ -0,0 +1,97 @@
+package com.edu.ulab.app.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous HTTP client of the user controller.
+ * Request bodies are serialized once, every request has its own rqid, so repeated creates aren't deduplicated.
+ */
+final class UserBookClient {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final String baseUrl;
+    private final byte[] createBody;
+    private final byte[] updateBody;
+
+    UserBookClient(String baseUrl, int books) {
+        this.baseUrl = baseUrl;
+        this.createBody = userBookRequest("Load Test User", books);
+        this.updateBody = userBookRequest("Updated Load Test User", books);
+    }
+
+    CompletableFuture<HttpResponse<String>> create() {
+        return send(request("/create")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(createBody)));
+    }
+
+    CompletableFuture<HttpResponse<String>> update(long userId) {
+        return send(request("/update/" + userId)
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(updateBody)));
+    }
+
+    CompletableFuture<HttpResponse<String>> get(long userId) {
+        return send(request("/get/" + userId).GET());
+    }
+
+    CompletableFuture<HttpResponse<String>> delete(long userId) {
+        return send(request("/delete/" + userId).DELETE());
+    }
+
+    /**
+     * @param response successful response of the create.
+     * @return long ID of the created user.
+     */
+    static long createdUserId(HttpResponse<String> response) {
+        try {
+            return OBJECT_MAPPER.readTree(response.body()).get("userId").asLong();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("rqid", "loadtest-" + requestIds.incrementAndGet());
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(HttpRequest.Builder request) {
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static byte[] userBookRequest(String fullName, int books) {
+        List<Map<String, Object>> bookRequests = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            bookRequests.add(Map.of("title", "Book " + i, "author", "Author " + i, "pageCount", 100 + i));
+        }
+        Map<String, Object> request = Map.of(
+                "userRequest", Map.of("fullName", fullName, "title", "reader", "age", 42),
+                "bookRequests", bookRequests);
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
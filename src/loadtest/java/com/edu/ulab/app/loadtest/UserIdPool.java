@@ -0,0 +1,39 @@
+package com.edu.ulab.app.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * IDs of the created and not deleted users, updates and gets take a random one, deletes remove a random one.
+ */
+final class UserIdPool {
+    private long[] ids = new long[1024];
+    private int size;
+
+    synchronized void add(long id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size++] = id;
+    }
+
+    /**
+     * @return long random user ID, -1 if there are no users.
+     */
+    synchronized long random() {
+        return size == 0 ? -1 : ids[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    /**
+     * @return long removed random user ID, -1 if there are no users.
+     */
+    synchronized long removeRandom() {
+        if (size == 0) {
+            return -1;
+        }
+        int index = ThreadLocalRandom.current().nextInt(size);
+        long id = ids[index];
+        ids[index] = ids[--size];
+        return id;
+    }
+}
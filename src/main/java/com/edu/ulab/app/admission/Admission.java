@@ -0,0 +1,15 @@
+package com.edu.ulab.app.admission;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method whose calls are limited by the concurrency limit of the kind, see {@link AdmissionControlAspect}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Admission {
+    AdmissionKind value();
+}
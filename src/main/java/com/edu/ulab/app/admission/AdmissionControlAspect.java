@@ -0,0 +1,143 @@
+package com.edu.ulab.app.admission;
+
+import com.edu.ulab.app.config.UserBookAdmissionProperties;
+import com.edu.ulab.app.constant.ErrorMessageTextConstants;
+import com.edu.ulab.app.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Admission control of the methods annotated with {@link Admission}.
+ * Reads and writes have separate concurrency limits, a call over the limit is rejected at once
+ * with {@link TooManyRequestsException}, so a burst of writes doesn't take all pooled connections from the reads.
+ * The aspect runs before the transaction and cache advice, a rejected call doesn't take a connection.
+ * A call made inside an admitted call of the same kind on the same thread uses the slot of the outer call.
+ * The latency of the call is passed to the limiter as the operation of the innermost admitted method
+ * with the number of rows of the arguments: {@link RowCounted} arguments and elements of collections.
+ * Metrics: userbook.admission.limit, userbook.admission.in.flight and userbook.admission.rejected by the kind tag.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AdmissionControlAspect {
+    private final boolean enabled;
+    private final Duration retryAfter;
+    private final Map<AdmissionKind, ConcurrencyLimiter> limiters = new EnumMap<>(AdmissionKind.class);
+    private final Map<AdmissionKind, Counter> rejectedCounters = new EnumMap<>(AdmissionKind.class);
+    private final ThreadLocal<Map<AdmissionKind, AdmittedCall>> admittedCalls =
+            ThreadLocal.withInitial(() -> new EnumMap<>(AdmissionKind.class));
+
+    /**
+     * Admitted call in progress on the thread, changed by the calls made inside it.
+     */
+    private static final class AdmittedCall {
+        private String operation;
+        private int rows;
+
+        private AdmittedCall(String operation, int rows) {
+            this.operation = operation;
+            this.rows = rows;
+        }
+    }
+
+    public AdmissionControlAspect(UserBookAdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.retryAfter = properties.getRetryAfter();
+        addLimiter(AdmissionKind.READ, properties.getRead(), meterRegistry);
+        addLimiter(AdmissionKind.WRITE, properties.getWrite(), meterRegistry);
+        log.info("User book admission control: {}", properties);
+    }
+
+    @Around("@annotation(com.edu.ulab.app.admission.Admission)")
+    public Object admit(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!enabled) {
+            return joinPoint.proceed();
+        }
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Admission admission = method.getAnnotation(Admission.class);
+        String operation = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        int rows = rowCount(joinPoint.getArgs());
+        Map<AdmissionKind, AdmittedCall> admitted = admittedCalls.get();
+        AdmittedCall outerCall = admitted.get(admission.value());
+        if (outerCall != null) {
+            outerCall.operation = operation;
+            outerCall.rows = Math.max(outerCall.rows, rows);
+            return joinPoint.proceed();
+        }
+
+        ConcurrencyLimiter limiter = limiters.get(admission.value());
+        if (!limiter.tryAcquire()) {
+            rejectedCounters.get(admission.value()).increment();
+            throw new TooManyRequestsException(ErrorMessageTextConstants.TOO_MANY_REQUESTS, retryAfter);
+        }
+
+        AdmittedCall call = new AdmittedCall(operation, rows);
+        admitted.put(admission.value(), call);
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            Object result = joinPoint.proceed();
+            completed = true;
+            return result;
+        } finally {
+            admitted.remove(admission.value());
+            if (completed) {
+                limiter.release(call.operation, System.nanoTime() - start, call.rows);
+            } else {
+                limiter.release();
+            }
+        }
+    }
+
+    private static int rowCount(Object[] args) {
+        int rows = 0;
+        for (Object arg : args) {
+            if (arg instanceof RowCounted rowCounted) {
+                rows += rowCounted.rowCount();
+            } else if (arg instanceof Collection<?> collection) {
+                for (Object element : collection) {
+                    rows += element instanceof RowCounted rowCounted ? rowCounted.rowCount() : 1;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private void addLimiter(AdmissionKind kind, UserBookAdmissionProperties.Limit properties, MeterRegistry meterRegistry) {
+        String kindTag = kind.name().toLowerCase(Locale.ROOT);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties.getLimit(), properties.isAdaptive(),
+                properties.getMinLimit(), properties.getMaxLimit(), properties.getLatencyTolerance());
+        limiters.put(kind, limiter);
+
+        Gauge.builder("userbook.admission.limit", limiter, ConcurrencyLimiter::getLimit)
+                .description("Concurrency limit of the facade calls")
+                .tag("kind", kindTag)
+                .register(meterRegistry);
+        Gauge.builder("userbook.admission.in.flight", limiter, ConcurrencyLimiter::getInFlight)
+                .description("Admitted facade calls in progress")
+                .tag("kind", kindTag)
+                .register(meterRegistry);
+        rejectedCounters.put(kind, Counter.builder("userbook.admission.rejected")
+                .description("Facade calls rejected over the concurrency limit")
+                .tag("kind", kindTag)
+                .register(meterRegistry));
+    }
+}
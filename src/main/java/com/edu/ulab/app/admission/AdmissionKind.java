@@ -0,0 +1,9 @@
+package com.edu.ulab.app.admission;
+
+/**
+ * Kind of the facade call, reads and writes are limited separately.
+ */
+public enum AdmissionKind {
+    READ,
+    WRITE
+}
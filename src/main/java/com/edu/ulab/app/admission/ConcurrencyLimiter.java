@@ -0,0 +1,121 @@
+package com.edu.ulab.app.admission;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limit of the concurrent calls, a call over the limit is rejected without waiting.
+ * The adaptive limit is decreased multiplicatively when the latency of a call is over the minimal measured latency
+ * multiplied by the tolerance, and increased by one when a fast call completes with at least half of the limit in use.
+ * Calls of one limit may be different operations of different sizes, a delete of one user and an import of a chunk
+ * of users with books, so the latency is divided by the number of rows of the call and compared with the minimal
+ * latency per row of the same operation only: a slow operation doesn't look like a load to the fast ones.
+ * The minimal latency is the minimum over the previous and the current window of {@link #WINDOW_SIZE} calls
+ * of the operation, so it follows the latency without load with the delay of one window and is never taken
+ * from a single call.
+ */
+public class ConcurrencyLimiter {
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int WINDOW_SIZE = 1000;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final boolean adaptive;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final Map<String, LatencyWindow> latencyWindows = new HashMap<>();
+    private volatile int limit;
+
+    /**
+     * Minimal latency per row of one operation.
+     */
+    private static final class LatencyWindow {
+        private long previousWindowMinNanos = Long.MAX_VALUE;
+        private long windowMinNanos = Long.MAX_VALUE;
+        private int windowSamples;
+
+        /**
+         * @param rowLatencyNanos latency per row of the completed call.
+         * @return long minimal latency per row including the completed call.
+         */
+        private long add(long rowLatencyNanos) {
+            windowMinNanos = Math.min(windowMinNanos, rowLatencyNanos);
+            long minLatencyNanos = Math.min(previousWindowMinNanos, windowMinNanos);
+            if (++windowSamples >= WINDOW_SIZE) {
+                windowSamples = 0;
+                previousWindowMinNanos = windowMinNanos;
+                windowMinNanos = Long.MAX_VALUE;
+            }
+            return minLatencyNanos;
+        }
+    }
+
+    /**
+     * @param limit initial limit, the fixed limit if the limiter isn't adaptive.
+     * @param adaptive whether the limit is changed by the latency of the calls.
+     * @param minLimit minimal adaptive limit.
+     * @param maxLimit maximal adaptive limit.
+     * @param latencyTolerance ratio of the latency to the minimal latency over which the limit is decreased.
+     */
+    public ConcurrencyLimiter(int limit, boolean adaptive, int minLimit, int maxLimit, double latencyTolerance) {
+        this.adaptive = adaptive;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTolerance = latencyTolerance;
+        this.limit = adaptive ? Math.min(Math.max(limit, this.minLimit), this.maxLimit) : limit;
+    }
+
+    /**
+     * @return boolean whether the call is admitted, an admitted call must be released.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releasing the completed call and adjusting the adaptive limit by its latency per row.
+     * @param operation name of the operation, latencies are compared within the operation.
+     * @param latencyNanos latency of the call.
+     * @param rows number of rows of the call, at least 1.
+     */
+    public void release(String operation, long latencyNanos, int rows) {
+        int inFlightCalls = inFlight.getAndDecrement();
+        if (adaptive) {
+            adjustLimit(operation, latencyNanos / Math.max(1, rows), inFlightCalls);
+        }
+    }
+
+    /**
+     * Releasing the failed call, its latency doesn't change the limit.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void adjustLimit(String operation, long rowLatencyNanos, int inFlightCalls) {
+        long minLatencyNanos = latencyWindows.computeIfAbsent(operation, o -> new LatencyWindow()).add(rowLatencyNanos);
+
+        if (rowLatencyNanos > minLatencyNanos * latencyTolerance) {
+            limit = Math.max(minLimit, (int) (limit * BACKOFF_RATIO));
+        } else if (inFlightCalls * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+}
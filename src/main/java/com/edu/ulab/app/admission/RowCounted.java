@@ -0,0 +1,9 @@
+package com.edu.ulab.app.admission;
+
+/**
+ * Argument of an admitted call which knows the number of rows written for it,
+ * the adaptive limit compares the latencies of the calls per row, see {@link ConcurrencyLimiter}.
+ */
+public interface RowCounted {
+    int rowCount();
+}
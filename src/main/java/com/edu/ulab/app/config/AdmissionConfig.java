@@ -0,0 +1,12 @@
+package com.edu.ulab.app.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Admission control of the facade calls, see {@link com.edu.ulab.app.admission.AdmissionControlAspect}.
+ */
+@Configuration
+@EnableConfigurationProperties(UserBookAdmissionProperties.class)
+public class AdmissionConfig {
+}
@@ -0,0 +1,53 @@
+package com.edu.ulab.app.config;
+
+import com.edu.ulab.app.web.async.MdcTaskDecorator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties({UserBookAsyncProperties.class, UserBookWriteBehindProperties.class})
+public class AsyncConfig {
+    public static final String USER_BOOK_TASK_EXECUTOR = "userBookTaskExecutor";
+
+    /**
+     * Executor of the facade calls in the async mode of the controller.
+     * The pool and the queue are bounded, a request over the limits is rejected with TaskRejectedException
+     * and counted by the userbook.executor.rejected counter. The MDC of the request thread is copied to the task.
+     * Pool and queue metrics of the executor are registered by Spring Boot with the name tag of the bean.
+     * @param properties async properties.
+     * @param meterRegistry meter registry.
+     * @return ThreadPoolTaskExecutor user book executor.
+     */
+    @Bean(USER_BOOK_TASK_EXECUTOR)
+    public ThreadPoolTaskExecutor userBookTaskExecutor(UserBookAsyncProperties properties, MeterRegistry meterRegistry) {
+        Counter rejectedCounter = Counter.builder("userbook.executor.rejected")
+                .description("Requests rejected by the full user book executor")
+                .register(meterRegistry);
+        ThreadPoolExecutor.AbortPolicy abortPolicy = new ThreadPoolExecutor.AbortPolicy();
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("user-book-");
+        executor.setCorePoolSize(properties.getCorePoolSize());
+        executor.setMaxPoolSize(properties.getMaxPoolSize());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setKeepAliveSeconds((int) properties.getKeepAlive().toSeconds());
+        executor.setTaskDecorator(new MdcTaskDecorator());
+        executor.setRejectedExecutionHandler((task, threadPoolExecutor) -> {
+            rejectedCounter.increment();
+            abortPolicy.rejectedExecution(task, threadPoolExecutor);
+        });
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationMillis(properties.getAwaitTermination().toMillis());
+        log.info("User book executor: {}", properties);
+
+        return executor;
+    }
+}
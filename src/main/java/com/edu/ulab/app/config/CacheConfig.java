@@ -0,0 +1,50 @@
+package com.edu.ulab.app.config;
+
+import com.edu.ulab.app.service.UserService;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Slf4j
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties({UserBookCacheProperties.class, UserBookIdIndexProperties.class})
+public class CacheConfig {
+    public static final String USER_BOOKS_CACHE = "userBooks";
+
+    /**
+     * Cache manager of user with books responses.
+     * Caches are bounded by size, expire after write and record hit/miss statistics.
+     * Evictions are applied after commit of the current transaction, puts are checked against the version of the user,
+     * see {@link UserBookResponseCache}.
+     * If the cache is disabled, then a no-op cache manager is used and every call reaches the database.
+     * @param properties cache properties.
+     * @param userService service reading the committed version of the user.
+     * @return CacheManager cache manager.
+     */
+    @Bean
+    public CacheManager cacheManager(UserBookCacheProperties properties, UserService userService) {
+        if (!properties.isEnabled()) {
+            log.info("User book cache is disabled");
+            return new NoOpCacheManager();
+        }
+
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(new UserBookResponseCache(USER_BOOKS_CACHE, Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build(), userService::getUserVersion)));
+        log.info("User book cache is enabled: {}", properties);
+
+        return cacheManager;
+    }
+}
@@ -0,0 +1,15 @@
+package com.edu.ulab.app.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Idempotency of the creates by the rqid header.
+ * Scheduling is used by the table store to delete the expired request IDs.
+ */
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(UserBookIdempotencyProperties.class)
+public class IdempotencyConfig {
+}
@@ -0,0 +1,47 @@
+package com.edu.ulab.app.config;
+
+import com.edu.ulab.app.metrics.DbTimingDataSource;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.function.Function;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Aspect recording methods of the classes annotated with {@link io.micrometer.core.annotation.Timed}.
+     * Timers are tagged by operation (method name), failed calls are counted by the exception tag.
+     * @param meterRegistry meter registry.
+     * @return TimedAspect timed aspect.
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        Function<ProceedingJoinPoint, Iterable<Tag>> operationTags =
+                joinPoint -> Tags.of("operation", joinPoint.getStaticPart().getSignature().getName());
+        return new TimedAspect(meterRegistry, operationTags);
+    }
+
+    /**
+     * Wrapping of the data source, so statements of every backend add their time to the DB stage of the request.
+     * @return BeanPostProcessor post processor of the data source bean.
+     */
+    @Bean
+    public static BeanPostProcessor dbTimingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof DbTimingDataSource)
+                        ? new DbTimingDataSource(dataSource)
+                        : bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "user-book.admission")
+public class UserBookAdmissionProperties {
+    /**
+     * Whether the concurrent facade calls are limited.
+     */
+    private boolean enabled = true;
+    /**
+     * Time after which the rejected client may retry, returned in the Retry-After header.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+    /**
+     * Limit of the reads.
+     */
+    private Limit read = new Limit(64, 256);
+    /**
+     * Limit of the writes, below the connection pool size, so reads get connections during a burst of writes.
+     */
+    private Limit write = new Limit(6, 10);
+
+    @Data
+    @NoArgsConstructor
+    public static class Limit {
+        /**
+         * Maximum number of concurrent calls, the initial limit if the limit is adaptive.
+         */
+        private int limit;
+        /**
+         * Whether the limit is decreased when the latency grows and increased when the latency is low.
+         */
+        private boolean adaptive = false;
+        /**
+         * Minimal adaptive limit.
+         */
+        private int minLimit = 1;
+        /**
+         * Maximal adaptive limit.
+         */
+        private int maxLimit;
+        /**
+         * Ratio of the call latency to the minimal measured latency over which the adaptive limit is decreased.
+         */
+        private double latencyTolerance = 2.0;
+
+        Limit(int limit, int maxLimit) {
+            this.limit = limit;
+            this.maxLimit = maxLimit;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "user-book.async")
+public class UserBookAsyncProperties {
+    /**
+     * Whether the facade calls of the controller run on the user book executor instead of the request thread.
+     */
+    private boolean enabled = false;
+    /**
+     * Number of threads kept in the executor.
+     */
+    private int corePoolSize = 8;
+    /**
+     * Maximum number of threads, extra threads are started only when the queue is full.
+     */
+    private int maxPoolSize = 16;
+    /**
+     * Maximum number of waiting requests, requests over the limit are rejected.
+     */
+    private int queueCapacity = 200;
+    /**
+     * Time after which an idle extra thread is stopped.
+     */
+    private Duration keepAlive = Duration.ofSeconds(60);
+    /**
+     * Time for the running requests to complete on shutdown.
+     */
+    private Duration awaitTermination = Duration.ofSeconds(30);
+}
@@ -0,0 +1,23 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "user-book.cache")
+public class UserBookCacheProperties {
+    /**
+     * Whether user with books responses are cached.
+     */
+    private boolean enabled = true;
+    /**
+     * Maximum number of cached users, the least recently used are evicted first.
+     */
+    private long maximumSize = 10_000;
+    /**
+     * Time after which a cached user expires.
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(5);
+}
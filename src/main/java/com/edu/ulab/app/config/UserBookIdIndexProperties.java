@@ -0,0 +1,17 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "user-book.book-id-index")
+public class UserBookIdIndexProperties {
+    /**
+     * Whether book IDs of the users are kept in the application, otherwise they are read on every get.
+     */
+    private boolean enabled = true;
+    /**
+     * Maximum number of book IDs of all users in the index, 8 bytes each, the least recently used users are evicted first.
+     */
+    private long maximumBookIds = 10_000_000;
+}
@@ -0,0 +1,33 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "user-book.idempotency")
+public class UserBookIdempotencyProperties {
+    /**
+     * Store of the responses by request ID: memory - bounded map of the application instance,
+     * table - IDEMPOTENCY_KEY table shared by all instances.
+     */
+    private String mode = "memory";
+    /**
+     * Time after which a repeated request with the same request ID is handled as a new one.
+     */
+    private Duration ttl = Duration.ofHours(1);
+    /**
+     * Maximum number of responses in the memory store, the oldest are evicted first.
+     */
+    private long maximumSize = 100_000;
+    /**
+     * Maximum time a concurrent repeated request waits for the response of the first one in the memory store,
+     * after it the repeated request is rejected with 409. The table store waits for the lock timeout of the database.
+     */
+    private Duration repeatTimeout = Duration.ofSeconds(10);
+    /**
+     * Delay between the deletes of the expired request IDs from the table store.
+     */
+    private Duration cleanupInterval = Duration.ofMinutes(1);
+}
@@ -0,0 +1,104 @@
+package com.edu.ulab.app.config;
+
+import com.edu.ulab.app.web.response.UserBookResponse;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Cache of user with books responses which never keeps a response of an older version than the committed user.
+ * Evictions of the writers are applied after commit of their transaction, so a reader can't put the old response back
+ * before the new version is committed. Puts of the readers are applied at once and the version of the user is read
+ * after the put: if the user was changed since the response was read, the response is evicted again,
+ * so a put which lost the race with the eviction of a writer is removed by the reader itself.
+ */
+public class UserBookResponseCache extends CaffeineCache {
+    private final Function<Long, Long> currentVersion;
+
+    /**
+     * @param name name of the cache.
+     * @param cache Caffeine cache of the responses by user ID.
+     * @param currentVersion reader of the committed version of the user by user ID, null if the user is absent.
+     */
+    public UserBookResponseCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                                 Function<Long, Long> currentVersion) {
+        super(name, cache, false);
+        this.currentVersion = currentVersion;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        super.put(key, value);
+        evictIfChanged(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = super.putIfAbsent(key, value);
+        if (existing == null) {
+            evictIfChanged(key, value);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        afterCommit(() -> super.evict(key));
+    }
+
+    @Override
+    public void clear() {
+        afterCommit(super::clear);
+    }
+
+    private void evictIfChanged(Object key, Object value) {
+        if (!(value instanceof UserBookResponse response) || !(key instanceof Long userId)) {
+            return;
+        }
+
+        boolean current = false;
+        try {
+            current = Objects.equals(currentVersion.apply(userId), response.getVersion());
+        } finally {
+            if (!current) {
+                super.evict(key);
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
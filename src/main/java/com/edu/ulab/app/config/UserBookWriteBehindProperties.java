@@ -0,0 +1,35 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "user-book.write-behind")
+public class UserBookWriteBehindProperties {
+    /**
+     * Whether created books are written to the database by the background writer after the commit of the caller.
+     */
+    private boolean enabled = false;
+    /**
+     * Maximum number of books written with one batch and one commit.
+     */
+    private int batchSize = 500;
+    /**
+     * Maximum time the writer waits for more books before it writes the started batch.
+     */
+    private Duration maxDelay = Duration.ofMillis(20);
+    /**
+     * Maximum number of books waiting for the writer, a create over it is rejected.
+     */
+    private int queueCapacity = 100_000;
+    /**
+     * Time a create waits for free space in the queue before it is rejected.
+     */
+    private Duration enqueueTimeout = Duration.ofMillis(100);
+    /**
+     * Time for the writer to write the queued books on shutdown.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+}
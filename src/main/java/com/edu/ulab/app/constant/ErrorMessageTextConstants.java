@@ -5,4 +5,18 @@ public class ErrorMessageTextConstants {
     public static final String USER_ID_CAN_NOT_BE_NULL = "User id can't be null";
     public static final String INCORRECT_USER_DATA = "Incorrect user data";
     public static final String BOOK_LIST_CAN_NOT_BE_NULL = "Book list can't be null";
+    public static final String INCORRECT_JSON = "Incorrect JSON of user book request";
+    public static final String INCORRECT_CURSOR = "Incorrect cursor of the user list";
+    public static final String INCORRECT_LIMIT = "Limit of the user list must be from 1 to ";
+    public static final String INCORRECT_USER_IDS = "Number of user ids must be from 1 to ";
+    public static final String CHUNK_WAS_NOT_SAVED = "Chunk of user book requests was not saved";
+    public static final String INCORRECT_ETAG = "Incorrect ETag of the user";
+    public static final String INCORRECT_BOOK_SEARCH = "Either author or title of the book search must be given";
+    public static final String INCORRECT_BOOK_SEARCH_MATCH = "Match of the book search must be prefix or words";
+    public static final String INCORRECT_BOOK_SEARCH_WORDS = "Number of words of the book search must be from 1 to ";
+    public static final String INCORRECT_BOOK_SEARCH_LIMIT = "Limit of the book search must be from 1 to ";
+    public static final String INCORRECT_BOOK_SEARCH_CURSOR = "Incorrect cursor of the book search";
+    public static final String TOO_MANY_REQUESTS = "Too many requests, try again later";
+    public static final String REQUEST_IN_PROGRESS = "Request with the same rqid is in progress, try again later";
+    public static final String REQUEST_QUEUE_IS_FULL = "Request queue is full, service is temporarily unavailable";
 }
@@ -0,0 +1,68 @@
+package com.edu.ulab.app.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Unmodifiable list of IDs backed by a primitive long array.
+ * IDs are boxed only when an element is read through the List interface,
+ * JSON is written straight from the array by {@link Serializer}.
+ */
+@JsonSerialize(using = LongIdList.Serializer.class)
+public final class LongIdList extends AbstractList<Long> implements RandomAccess {
+    private static final LongIdList EMPTY = new LongIdList(new long[0]);
+
+    private final long[] ids;
+
+    private LongIdList(long[] ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * @param ids IDs, the array is not copied and must not be changed after the call.
+     * @return LongIdList list of the IDs.
+     */
+    public static LongIdList of(long[] ids) {
+        return ids.length == 0 ? EMPTY : new LongIdList(ids);
+    }
+
+    @Override
+    public Long get(int index) {
+        return ids[index];
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return long[] copy of the IDs.
+     */
+    public long[] toLongArray() {
+        return ids.clone();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(ids);
+    }
+
+    public static class Serializer extends StdSerializer<LongIdList> {
+        public Serializer() {
+            super(LongIdList.class);
+        }
+
+        @Override
+        public void serialize(LongIdList value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeArray(value.ids, 0, value.ids.length);
+        }
+    }
+}
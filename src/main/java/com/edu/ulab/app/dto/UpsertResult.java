@@ -0,0 +1,10 @@
+package com.edu.ulab.app.dto;
+
+/**
+ * Result of the update, which creates the row if it doesn't exist.
+ * @param saved saved data with ID.
+ * @param inserted whether a new row was inserted instead of updating an existing one.
+ * @param <T> type of the saved data.
+ */
+public record UpsertResult<T>(T saved, boolean inserted) {
+}
@@ -0,0 +1,21 @@
+package com.edu.ulab.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Row of the PERSON LEFT JOIN BOOK query, book fields are null for a user without books.
+ */
+@Data
+@AllArgsConstructor
+public class UserBookRowDto {
+    private Long userId;
+    private String fullName;
+    private String userTitle;
+    private Integer age;
+    private Long version;
+    private Long bookId;
+    private String bookTitle;
+    private String author;
+    private Long pageCount;
+}
@@ -14,4 +14,5 @@ public class UserDto {
     private String fullName;
     private String title;
     private int age;
+    private long version;
 }
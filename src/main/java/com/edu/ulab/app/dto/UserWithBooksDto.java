@@ -0,0 +1,23 @@
+package com.edu.ulab.app.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserWithBooksDto {
+    private Long id;
+    private String fullName;
+    private String title;
+    private int age;
+    private List<BookDto> books;
+    @JsonIgnore
+    private long version;
+}
@@ -11,9 +11,12 @@ import javax.persistence.*;
 @Data
 public class Person {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "person_seq")
+    @SequenceGenerator(name = "person_seq", sequenceName = "PERSON_SEQ", allocationSize = 50)
     private Long id;
     private String fullName;
     private String title;
     private int age;
+    @Column(insertable = false, updatable = false)
+    private long version;
 }
@@ -0,0 +1,166 @@
+package com.edu.ulab.app.facade;
+
+import com.edu.ulab.app.admission.Admission;
+import com.edu.ulab.app.admission.AdmissionKind;
+import com.edu.ulab.app.constant.ErrorMessageTextConstants;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.exception.InvalidRequestDataException;
+import com.edu.ulab.app.search.BookSearchField;
+import com.edu.ulab.app.search.BookSearchMode;
+import com.edu.ulab.app.search.BookWords;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.web.response.BookListItemResponse;
+import com.edu.ulab.app.web.response.BookPageResponse;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+@Slf4j
+@Component
+@Timed("userbook.facade")
+public class BookSearchFacade {
+    private static final int MAX_SEARCH_LIMIT = 1000;
+    private static final int MAX_SEARCH_WORDS = 10;
+    private static final char CURSOR_SEPARATOR = ':';
+
+    private final BookService bookService;
+
+    /**
+     * Position of the next page.
+     * @param afterId ID of the last book of the previous page.
+     * @param afterKey lower case searched field of the last book of the previous page.
+     */
+    private record Cursor(long afterId, String afterKey) {
+    }
+
+    public BookSearchFacade(BookService bookService) {
+        this.bookService = bookService;
+    }
+
+    /**
+     * Searching a page of books by author or title, case insensitive.
+     * With prefix match the books are ordered by the field and ID, with words match by ID.
+     * Every page is read by an index from the last book of the previous page, which is kept in the cursor,
+     * so neither the number of matching books nor the number of the previous pages is scanned.
+     * @param author searched author, null if the title is searched.
+     * @param title searched title, null if the author is searched.
+     * @param match prefix - the field starts with the text, words - the field contains all words of the text.
+     * @param cursor cursor from the previous page, null for the first page.
+     * @param limit maximum number of books on the page.
+     * @return BookPageResponse books of the page and the cursor of the next page, null if it is the last page.
+     * @throws InvalidRequestDataException if both or none of author and title, incorrect match, words, cursor or limit.
+     */
+    @Transactional(readOnly = true)
+    @Admission(AdmissionKind.READ)
+    public BookPageResponse searchBooks(String author, String title, String match, String cursor, int limit) {
+        log.debug("Got book search request with author: {}, title: {}, match: {}, cursor: {}, limit: {}",
+                author, title, match, cursor, limit);
+        boolean byAuthor = author != null && !author.isBlank();
+        boolean byTitle = title != null && !title.isBlank();
+        if (byAuthor == byTitle) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_BOOK_SEARCH);
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_BOOK_SEARCH_LIMIT + MAX_SEARCH_LIMIT);
+        }
+
+        BookSearchField field = byAuthor ? BookSearchField.AUTHOR : BookSearchField.TITLE;
+        String text = byAuthor ? author : title;
+        List<BookDto> books = switch (parseMode(match)) {
+            case PREFIX -> findBooksByPrefix(field, BookWords.key(text), cursor, limit + 1);
+            case WORDS -> findBooksByWords(field, text, cursor, limit + 1);
+        };
+        String nextCursor = null;
+        if (books.size() > limit) {
+            books = books.subList(0, limit);
+            nextCursor = encodeCursor(books.get(limit - 1), field);
+        }
+        log.debug("Found books: {}, next cursor: {}", books.size(), nextCursor);
+
+        List<BookListItemResponse> items = books.stream()
+                .map(book -> BookListItemResponse.builder()
+                        .bookId(book.getId())
+                        .userId(book.getUserId())
+                        .title(book.getTitle())
+                        .author(book.getAuthor())
+                        .pageCount(book.getPageCount())
+                        .build())
+                .toList();
+
+        return BookPageResponse.builder()
+                .books(items)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private List<BookDto> findBooksByPrefix(BookSearchField field, String prefix, String cursor, int limit) {
+        if (cursor == null) {
+            return bookService.findBooksByPrefix(field, prefix, null, 0, limit);
+        }
+
+        Cursor after = decodeCursor(cursor);
+        if (!after.afterKey().startsWith(prefix)) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_BOOK_SEARCH_CURSOR);
+        }
+        return bookService.findBooksByPrefix(field, prefix, after.afterKey(), after.afterId(), limit);
+    }
+
+    /**
+     * Books of the first word are read in order and checked for the other words,
+     * so the longest word goes first as long words are usually rare.
+     */
+    private List<BookDto> findBooksByWords(BookSearchField field, String text, String cursor, int limit) {
+        List<String> words = new ArrayList<>(BookWords.words(text));
+        if (words.isEmpty() || words.size() > MAX_SEARCH_WORDS) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_BOOK_SEARCH_WORDS + MAX_SEARCH_WORDS);
+        }
+        words.sort(Comparator.comparingInt(String::length).reversed());
+
+        long afterId = cursor == null ? 0 : decodeCursor(cursor).afterId();
+        return bookService.findBooksByWords(field, words, afterId, limit);
+    }
+
+    private static BookSearchMode parseMode(String match) {
+        try {
+            return BookSearchMode.valueOf(match.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_BOOK_SEARCH_MATCH);
+        }
+    }
+
+    /**
+     * Encoding of the last book of the page to the opaque cursor of the next page.
+     * @param book last book of the page.
+     * @param field searched field, its lower case value is the position of the prefix search.
+     * @return String URL safe cursor with the book ID and the lower case field.
+     */
+    private static String encodeCursor(BookDto book, BookSearchField field) {
+        String key = BookWords.key(field == BookSearchField.AUTHOR ? book.getAuthor() : book.getTitle());
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((book.getId() + String.valueOf(CURSOR_SEPARATOR) + key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decoding of the last book of the previous page from the cursor.
+     * @param cursor cursor from the previous page.
+     * @return Cursor book ID and lower case field of the last book of the previous page.
+     * @throws InvalidRequestDataException if the cursor is not made by encodeCursor.
+     */
+    private static Cursor decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(CURSOR_SEPARATOR);
+            return new Cursor(Long.parseLong(decoded.substring(0, separator)), decoded.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_BOOK_SEARCH_CURSOR);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.edu.ulab.app.facade;
+
+/**
+ * Strategy of replacing user books in update of user with books.
+ */
+public enum BookUpdateMode {
+    /**
+     * All user books are deleted with one query and the requested books are inserted with one batch.
+     */
+    REPLACE,
+    /**
+     * Books that are equal to the requested ones stay in place with the same ID,
+     * only missing books are deleted and only new books are inserted.
+     */
+    DIFF
+}
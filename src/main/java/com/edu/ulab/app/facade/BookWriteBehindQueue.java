@@ -0,0 +1,353 @@
+package com.edu.ulab.app.facade;
+
+import com.edu.ulab.app.config.UserBookWriteBehindProperties;
+import com.edu.ulab.app.constant.ErrorMessageTextConstants;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.exception.TooManyRequestsException;
+import com.edu.ulab.app.metrics.SqlMetrics;
+import com.edu.ulab.app.repository.SequenceIdAllocator;
+import com.edu.ulab.app.search.BookWordIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind queue of the created books for the ingest path, where throughput matters more than reading own writes.
+ * IDs of the books are taken from the blocks of BOOK_SEQ, so the caller gets them without waiting for the insert.
+ * Books are queued after the commit of the caller transaction, so the writer never sees books of an uncommitted user,
+ * and the background writer inserts them with one batch and one commit for up to batch-size books or max-delay.
+ * Books are counted as pending for their user before the commit, while the caller still holds the lock of the user,
+ * so the next writer of the user which waits for them can't miss the books queued after the commit,
+ * the count is taken back if the caller transaction is rolled back.
+ * Space in the queue is reserved before the commit, a create over the capacity is rejected with TooManyRequestsException.
+ * Books of a failed batch are written again user by user, books of a user which still fail go to the failure callback.
+ * Queued books are written on shutdown.
+ */
+@Slf4j
+@Component
+public class BookWriteBehindQueue {
+    private final boolean enabled;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final long maxDelayNanos;
+    private final Duration enqueueTimeout;
+    private final Duration shutdownTimeout;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SqlMetrics sqlMetrics;
+    private final SequenceIdAllocator sequenceIdAllocator;
+    private final BookWordIndex bookWordIndex;
+    private final BlockingQueue<BookDto> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+    private final Object writtenMonitor = new Object();
+    private final Map<Long, PendingBooks> pendingBooksByUserId = new HashMap<>();
+    private final DistributionSummary batchSizes;
+    private final Counter failedCounter;
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile Consumer<FailedBooks> failureCallback = failedBooks -> {
+    };
+
+    /**
+     * Books of the user which were not written.
+     * @param userId user ID.
+     * @param bookIds IDs of the books returned to the caller.
+     * @param cause failure of the insert.
+     */
+    public record FailedBooks(long userId, List<Long> bookIds, Exception cause) {
+    }
+
+    /**
+     * Counts of the pending and written books of one user, the entry is removed when all pending books are written.
+     */
+    private static final class PendingBooks {
+        private long queued;
+        private long written;
+    }
+
+    public BookWriteBehindQueue(UserBookWriteBehindProperties properties,
+                                @Value("${user-book.backend:jdbc}") String backend,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                SqlMetrics sqlMetrics,
+                                SequenceIdAllocator sequenceIdAllocator,
+                                BookWordIndex bookWordIndex,
+                                MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled() && !"memory".equals(backend);
+        this.batchSize = properties.getBatchSize();
+        this.queueCapacity = properties.getQueueCapacity();
+        this.maxDelayNanos = properties.getMaxDelay().toNanos();
+        this.enqueueTimeout = properties.getEnqueueTimeout();
+        this.shutdownTimeout = properties.getShutdownTimeout();
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sqlMetrics = sqlMetrics;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+        this.bookWordIndex = bookWordIndex;
+        this.capacity = new Semaphore(queueCapacity);
+
+        Gauge.builder("userbook.writebehind.queue.size", queue, BlockingQueue::size)
+                .description("Books waiting for the write-behind writer")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("userbook.writebehind.batch.size")
+                .description("Books written with one commit by the write-behind writer")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("userbook.writebehind.failed")
+                .description("Books which the write-behind writer failed to write")
+                .register(meterRegistry);
+
+        this.writer = new Thread(this::writeQueuedBooks, "book-write-behind");
+        if (enabled) {
+            running = true;
+            writer.start();
+        } else if (properties.isEnabled()) {
+            log.warn("Book write-behind is not used with the memory backend");
+        }
+        log.info("Book write-behind: {}", properties);
+    }
+
+    /**
+     * @param booksCount number of the created books.
+     * @return boolean whether the books can be queued, otherwise they are inserted by the caller.
+     */
+    public boolean accepts(int booksCount) {
+        return running && booksCount <= queueCapacity;
+    }
+
+    /**
+     * @param failureCallback consumer of the books which were not written, for example compensation of the user.
+     */
+    public void setFailureCallback(Consumer<FailedBooks> failureCallback) {
+        this.failureCallback = failureCallback;
+    }
+
+    /**
+     * Assigning IDs to the books, counting them as pending for their users at once
+     * and queueing them after the commit of the current transaction.
+     * @param books books with user ID, IDs are set to them.
+     * @return List<BookDto> the books with IDs in the same order.
+     * @throws TooManyRequestsException if the queue has no space for the books within the enqueue timeout.
+     */
+    public List<BookDto> enqueue(List<BookDto> books) {
+        if (books.isEmpty()) {
+            return books;
+        }
+
+        acquireCapacity(books.size());
+        books.forEach(book -> book.setId(sequenceIdAllocator.nextBookId()));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(books);
+            return books;
+        }
+
+        addPending(books);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    queue.addAll(books);
+                } else {
+                    removePending(books);
+                    capacity.release(books.size());
+                }
+            }
+        });
+        return books;
+    }
+
+    /**
+     * Waiting until the books of the user pending before the call are written, for example before his books are replaced.
+     * Books of the other users are not waited for, the call returns at once if the user has no pending books.
+     * @param userId user ID.
+     */
+    public void awaitWritten(long userId) {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (writtenMonitor) {
+            PendingBooks pending = pendingBooksByUserId.get(userId);
+            if (pending == null) {
+                return;
+            }
+            long target = pending.queued;
+            while (pendingBooksByUserId.get(userId) == pending && pending.written < Math.min(target, pending.queued)) {
+                try {
+                    writtenMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writing the queued books on shutdown, new books are inserted by the callers.
+     */
+    @PreDestroy
+    public void flush() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        running = false;
+        writer.join(shutdownTimeout.toMillis());
+        if (writer.isAlive()) {
+            log.error("Book write-behind queue was not flushed in {}, books are not written: {}", shutdownTimeout, queue.size());
+        } else {
+            log.info("Book write-behind queue is flushed");
+        }
+    }
+
+    private void acquireCapacity(int booksCount) {
+        try {
+            if (capacity.tryAcquire(booksCount, enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new TooManyRequestsException(ErrorMessageTextConstants.TOO_MANY_REQUESTS, Duration.ofSeconds(1));
+    }
+
+    private void add(List<BookDto> books) {
+        addPending(books);
+        queue.addAll(books);
+    }
+
+    private void addPending(List<BookDto> books) {
+        synchronized (writtenMonitor) {
+            for (BookDto book : books) {
+                pendingBooksByUserId.computeIfAbsent(book.getUserId(), userId -> new PendingBooks()).queued++;
+            }
+        }
+    }
+
+    /**
+     * Taking back the pending books of a rolled back transaction, which are never queued.
+     */
+    private void removePending(List<BookDto> books) {
+        synchronized (writtenMonitor) {
+            for (BookDto book : books) {
+                PendingBooks pending = pendingBooksByUserId.get(book.getUserId());
+                if (--pending.queued == pending.written) {
+                    pendingBooksByUserId.remove(book.getUserId());
+                }
+            }
+            writtenMonitor.notifyAll();
+        }
+    }
+
+    private void markWritten(List<BookDto> books) {
+        synchronized (writtenMonitor) {
+            for (BookDto book : books) {
+                PendingBooks pending = pendingBooksByUserId.get(book.getUserId());
+                if (++pending.written == pending.queued) {
+                    pendingBooksByUserId.remove(book.getUserId());
+                }
+            }
+            writtenMonitor.notifyAll();
+        }
+    }
+
+    private void writeQueuedBooks() {
+        List<BookDto> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                BookDto first = queue.poll(maxDelayNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remainingNanos <= 0) {
+                        break;
+                    }
+                    BookDto next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                log.warn("Book write-behind writer was interrupted, it stops when the queue is written");
+            }
+
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<BookDto> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+        } catch (RuntimeException e) {
+            log.warn("Batch of {} books was not written, writing them by user: {}", batch.size(), e.getMessage());
+            batch.stream()
+                    .collect(Collectors.groupingBy(BookDto::getUserId, LinkedHashMap::new, Collectors.toList()))
+                    .forEach(this::writeUserBooks);
+        }
+
+        batchSizes.record(batch.size());
+        capacity.release(batch.size());
+        markWritten(batch);
+    }
+
+    private void writeUserBooks(Long userId, List<BookDto> books) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(books));
+        } catch (RuntimeException e) {
+            log.error("Books of user {} were not written: {}", userId, e.getMessage());
+            failedCounter.increment(books.size());
+            try {
+                failureCallback.accept(new FailedBooks(userId, books.stream().map(BookDto::getId).toList(), e));
+            } catch (RuntimeException callbackException) {
+                log.error("Failure callback of the books of user {} failed: {}", userId, callbackException.getMessage());
+            }
+        }
+    }
+
+    private void insert(List<BookDto> books) {
+        final String INSERT_SQL = "INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?,?)";
+
+        sqlMetrics.record("batch_insert_book_write_behind", () -> jdbcTemplate.batchUpdate(INSERT_SQL, books, books.size(),
+                (ps, book) -> {
+                    ps.setLong(1, book.getId());
+                    ps.setString(2, book.getTitle());
+                    ps.setString(3, book.getAuthor());
+                    ps.setLong(4, book.getPageCount());
+                    ps.setLong(5, book.getUserId());
+                }));
+        bookWordIndex.indexBooks(books);
+    }
+}
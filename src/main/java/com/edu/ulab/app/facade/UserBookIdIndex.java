@@ -0,0 +1,115 @@
+package com.edu.ulab.app.facade;
+
+import com.edu.ulab.app.config.UserBookIdIndexProperties;
+import com.edu.ulab.app.dto.LongIdList;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Index of sorted book IDs of the users kept in the application as primitive arrays.
+ * Every entry is stored with the version of the user, which is incremented by every update of the user,
+ * so an entry of another version than the version of the read user is not used.
+ * Changes are applied after commit of the current transaction, so the index never has uncommitted book IDs.
+ */
+@Slf4j
+@Component
+public class UserBookIdIndex {
+    public static final String INDEX_NAME = "userBookIds";
+
+    private final boolean enabled;
+    private final Cache<Long, VersionedBookIds> bookIdsByUserId;
+
+    private record VersionedBookIds(long version, long[] bookIds) {
+    }
+
+    public UserBookIdIndex(UserBookIdIndexProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.bookIdsByUserId = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumBookIds())
+                .weigher((Long userId, VersionedBookIds entry) -> entry.bookIds().length + 1)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, bookIdsByUserId, INDEX_NAME);
+        log.info("User book ID index: {}", properties);
+    }
+
+    /**
+     * @param userId user ID.
+     * @param version version of the read user.
+     * @return long[] sorted book IDs of the user of this version, null if they are not in the index.
+     */
+    public long[] get(long userId, long version) {
+        if (!enabled) {
+            return null;
+        }
+
+        VersionedBookIds entry = bookIdsByUserId.getIfPresent(userId);
+        return entry != null && entry.version() == version ? entry.bookIds() : null;
+    }
+
+    /**
+     * Putting book IDs of the user after commit of the current transaction.
+     * An entry of a newer version is not replaced by an older one.
+     * @param userId user ID.
+     * @param version version of the user with these books.
+     * @param bookIds book IDs of the user in any order, the collection is copied.
+     * @return long[] sorted book IDs of the user.
+     */
+    public long[] put(long userId, long version, Collection<Long> bookIds) {
+        long[] sortedBookIds = bookIds instanceof LongIdList idList
+                ? idList.toLongArray()
+                : bookIds.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sortedBookIds);
+        put(userId, version, sortedBookIds);
+
+        return sortedBookIds;
+    }
+
+    /**
+     * @param userId user ID.
+     * @param version version of the user with these books.
+     * @param sortedBookIds sorted book IDs of the user, the array must not be changed after the call.
+     */
+    public void put(long userId, long version, long[] sortedBookIds) {
+        if (!enabled) {
+            return;
+        }
+
+        VersionedBookIds entry = new VersionedBookIds(version, sortedBookIds);
+        afterCommit(() -> bookIdsByUserId.asMap().merge(userId, entry,
+                (stored, put) -> put.version() >= stored.version() ? put : stored));
+    }
+
+    /**
+     * Removing book IDs of the deleted user after commit of the current transaction.
+     * @param userId user ID.
+     */
+    public void remove(long userId) {
+        if (enabled) {
+            afterCommit(() -> bookIdsByUserId.invalidate(userId));
+        }
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
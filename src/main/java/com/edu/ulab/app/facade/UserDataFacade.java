@@ -1,42 +1,92 @@
 package com.edu.ulab.app.facade;
 
+import com.edu.ulab.app.admission.Admission;
+import com.edu.ulab.app.admission.AdmissionKind;
+import com.edu.ulab.app.config.CacheConfig;
 import com.edu.ulab.app.constant.ErrorMessageTextConstants;
 import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.LongIdList;
+import com.edu.ulab.app.dto.UpsertResult;
 import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.dto.UserWithBooksDto;
 import com.edu.ulab.app.exception.InvalidRequestDataException;
 import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.exception.PreconditionFailedException;
 import com.edu.ulab.app.mapper.BookMapper;
 import com.edu.ulab.app.mapper.UserMapper;
-import com.edu.ulab.app.service.impl.BookServiceImplTemplate;
-import com.edu.ulab.app.service.impl.UserServiceImplTemplate;
+import com.edu.ulab.app.metrics.RequestTimings;
+import com.edu.ulab.app.metrics.RequestTimings.Stage;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.UserService;
 import com.edu.ulab.app.validation.BookValidator;
 import com.edu.ulab.app.validation.UserValidator;
 import com.edu.ulab.app.web.request.BookRequest;
 import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.UserBookBulkResponse;
 import com.edu.ulab.app.web.response.UserBookResponse;
+import com.edu.ulab.app.web.response.UserBulkDeleteResponse;
+import com.edu.ulab.app.web.response.UserListItemResponse;
+import com.edu.ulab.app.web.response.UserMultiGetResponse;
+import com.edu.ulab.app.web.response.UserPageResponse;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
+@Timed("userbook.facade")
 public class UserDataFacade {
-    private final UserServiceImplTemplate userService;
-    private final BookServiceImplTemplate bookService;
+    private static final int MAX_LIST_LIMIT = 1000;
+    private static final int MAX_MULTI_GET_IDS = 1000;
+    private static final int IN_CHUNK_SIZE = 500;
+
+    private final UserService userService;
+    private final BookService bookService;
     private final UserMapper userMapper;
     private final BookMapper bookMapper;
+    private final BookUpdateMode bookUpdateMode;
+    private final UserBookIdIndex userBookIdIndex;
+    private final CacheManager cacheManager;
+    private final BookWriteBehindQueue bookWriteBehindQueue;
 
-    public UserDataFacade(UserServiceImplTemplate userService,
-                          BookServiceImplTemplate bookService,
+    public UserDataFacade(UserService userService,
+                          BookService bookService,
                           UserMapper userMapper,
-                          BookMapper bookMapper) {
+                          BookMapper bookMapper,
+                          @Value("${user-book.update-mode:replace}") BookUpdateMode bookUpdateMode,
+                          UserBookIdIndex userBookIdIndex,
+                          CacheManager cacheManager,
+                          BookWriteBehindQueue bookWriteBehindQueue) {
         this.userService = userService;
         this.bookService = bookService;
         this.userMapper = userMapper;
         this.bookMapper = bookMapper;
+        this.bookUpdateMode = bookUpdateMode;
+        this.userBookIdIndex = userBookIdIndex;
+        this.cacheManager = cacheManager;
+        this.bookWriteBehindQueue = bookWriteBehindQueue;
+        bookWriteBehindQueue.setFailureCallback(this::compensateUser);
     }
 
     /**
@@ -47,138 +97,603 @@ public class UserDataFacade {
      * @throws InvalidRequestDataException if incorrect or null of user or book data from userBookRequest.
      */
     @Transactional
+    @Admission(AdmissionKind.WRITE)
     public UserBookResponse createUserWithBooks(UserBookRequest userBookRequest) {
-        log.info("Got user book create request: {}", userBookRequest);
+        log.debug("Got user book create request: {}", userBookRequest);
 
-        UserDto userDto = userMapper.userRequestToUserDto(userBookRequest.getUserRequest());
-        log.info("Mapped user request: {}", userDto);
-        if (userDto == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.USER_CAN_NOT_BE_NULL);
-        if (!UserValidator.isValidUserData(userDto)) throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_USER_DATA);
+        UserDto userDto = mapValidUser(userBookRequest);
+        List<BookDto> mappedBooks = mapValidBooks(userBookRequest);
 
         UserDto createdUser = userService.createUser(userDto);
-        log.info("Created user: {}", createdUser);
+        log.debug("Created user: {}", createdUser);
+        mappedBooks.forEach(bookDto -> bookDto.setUserId(createdUser.getId()));
 
-        List<BookRequest> bookRequest = userBookRequest.getBookRequests();
-        if (bookRequest == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.BOOK_LIST_CAN_NOT_BE_NULL);
-
-        List<Long> bookIdList = bookRequest
-                .stream()
-                .filter(Objects::nonNull)
-                .map(bookMapper::bookRequestToBookDto)
-                .filter(BookValidator::isValidBookData)
-                .peek(bookDto -> bookDto.setUserId(createdUser.getId()))
-                .peek(mappedBookDto -> log.info("Mapped book: {}", mappedBookDto))
-                .map(bookService::createBook)
-                .peek(createdBook -> log.info("Created book: {}", createdBook))
-                .map(BookDto::getId)
-                .toList();
-        log.info("Collected book ids: {}", bookIdList);
+        LongIdList bookIdList = createBooks(mappedBooks);
+        log.debug("Collected book ids: {}", bookIdList);
+        userBookIdIndex.put(createdUser.getId(), createdUser.getVersion(), bookIdList);
 
         return UserBookResponse.builder()
                 .userId(createdUser.getId())
                 .booksIdList(bookIdList)
+                .version(createdUser.getVersion())
                 .build();
     }
 
+    /**
+     * Create users and their books from a chunk of UserBookRequest in one transaction.
+     * Requests with incorrect data are skipped and get an error message in the response,
+     * all valid users are inserted with one batch and all their books with another one.
+     * @param userBookRequests chunk of requests with data of users and their books.
+     * @return List<UserBookBulkResponse> user id and his books id or error message for every request in the same order.
+     */
+    @Transactional
+    @Admission(AdmissionKind.WRITE)
+    public List<UserBookBulkResponse> createUsersWithBooks(List<UserBookRequest> userBookRequests) {
+        log.debug("Got user book bulk create request, size: {}", userBookRequests.size());
+
+        UserBookBulkResponse[] responses = new UserBookBulkResponse[userBookRequests.size()];
+        List<Integer> validRequestIndexes = new ArrayList<>();
+        List<UserDto> users = new ArrayList<>();
+        List<List<BookDto>> usersBooks = new ArrayList<>();
+        for (int i = 0; i < userBookRequests.size(); i++) {
+            try {
+                UserBookRequest userBookRequest = userBookRequests.get(i);
+                if (userBookRequest == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.USER_CAN_NOT_BE_NULL);
+
+                UserDto userDto = mapValidUser(userBookRequest);
+                List<BookDto> bookDtos = mapValidBooks(userBookRequest);
+                validRequestIndexes.add(i);
+                users.add(userDto);
+                usersBooks.add(bookDtos);
+            } catch (InvalidRequestDataException e) {
+                log.debug("Skipped invalid user book request {}: {}", i, e.getMessage());
+                responses[i] = UserBookBulkResponse.builder()
+                        .errorMessage(e.getMessage())
+                        .build();
+            }
+        }
+
+        List<UserDto> createdUsers = userService.createUsers(users);
+        log.debug("Created users, size: {}", createdUsers.size());
+
+        List<BookDto> allBooks = new ArrayList<>();
+        for (int i = 0; i < createdUsers.size(); i++) {
+            Long userId = createdUsers.get(i).getId();
+            usersBooks.get(i).forEach(bookDto -> bookDto.setUserId(userId));
+            allBooks.addAll(usersBooks.get(i));
+        }
+
+        Iterator<BookDto> createdBooks = saveBooks(allBooks).iterator();
+        log.debug("Created books, size: {}", allBooks.size());
+
+        for (int i = 0; i < createdUsers.size(); i++) {
+            List<Long> bookIdList = new ArrayList<>(usersBooks.get(i).size());
+            for (int j = 0; j < usersBooks.get(i).size(); j++) {
+                bookIdList.add(createdBooks.next().getId());
+            }
+            userBookIdIndex.put(createdUsers.get(i).getId(), createdUsers.get(i).getVersion(), bookIdList);
+
+            responses[validRequestIndexes.get(i)] = UserBookBulkResponse.builder()
+                    .userId(createdUsers.get(i).getId())
+                    .booksIdList(bookIdList)
+                    .build();
+        }
+
+        return Arrays.asList(responses);
+    }
+
+    /**
+     * Waiting until the books of the user queued by the write-behind queue are written.
+     * It is called before the update of the user, so the wait takes neither a connection nor an admission slot.
+     * @param userId user ID.
+     */
+    public void awaitQueuedBooks(Long userId) {
+        if (userId != null) {
+            bookWriteBehindQueue.awaitWritten(userId);
+        }
+    }
+
     /**
      * Update user and his book from UserBookRequest.
      * The user and his books are update based on the request and update in a database.
      * if a user with such an identifier is not in the database,
-     * then a new user and his books with unique identifiers are created based on the request.
+     * then a new user and his books with unique identifiers are created based on the request,
+     * the user is updated or, if missing, inserted by one upsert call and the books of the inserted user are only created.
+     * Books of the updated user are replaced according to the configured {@link BookUpdateMode}.
+     * Queued books of the user are awaited by {@link #awaitQueuedBooks} before this call, so the replaced books include them,
+     * and checked again after the user is locked for the books queued in between.
+     * The version of the user is incremented first, so concurrent updates of the user wait for each other,
+     * and if the expected version is given, the update of the other version is rejected.
      * @param userBookRequest request with data of user and his books.
      * @param userId user ID for updating information about him and his books.
-     * @return UserBookResponse user ID and his books ID.
+     * @param expectedVersion version of the user from the If-Match header, null to update any version.
+     * @param existingOnly whether only an existing user is updated, true for any If-Match header including *.
+     * @return UserBookResponse user ID, his books ID and the new version of the user.
      * @throws InvalidRequestDataException if incorrect or null of user or book data from userBookRequest.
+     * @throws PreconditionFailedException if the user has other version than expected or the existing user not found.
      */
     @Transactional
-    public UserBookResponse updateUserWithBooks(UserBookRequest userBookRequest, Long userId) {
-        log.info("Got user book update request: {}, userId = {}", userBookRequest, userId);
+    @CacheEvict(cacheNames = CacheConfig.USER_BOOKS_CACHE, key = "#userId")
+    @Admission(AdmissionKind.WRITE)
+    public UserBookResponse updateUserWithBooks(UserBookRequest userBookRequest, Long userId, Long expectedVersion,
+                                                boolean existingOnly) {
+        log.debug("Got user book update request: {}, userId = {}, expected version = {}, existing only = {}",
+                userBookRequest, userId, expectedVersion, existingOnly);
         if (userId == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.USER_CAN_NOT_BE_NULL);
 
-        UserDto userDto = userMapper.userRequestToUserDto(userBookRequest.getUserRequest());
-        log.info("Mapped user request: {}", userDto);
-        if (userDto == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.USER_CAN_NOT_BE_NULL);
-        if (!UserValidator.isValidUserData(userDto)) throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_USER_DATA);
+        UserDto userDto = mapValidUser(userBookRequest);
+        List<BookDto> mappedBooks = mapValidBooks(userBookRequest);
 
-        List<BookRequest> bookRequest = userBookRequest.getBookRequests();
-        if (bookRequest == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.BOOK_LIST_CAN_NOT_BE_NULL);
+        if (!userService.incrementUserVersion(userId, expectedVersion) && (expectedVersion != null || existingOnly)) {
+            throw new PreconditionFailedException("No have user with id: " + userId + " and version: "
+                    + (expectedVersion == null ? "any" : expectedVersion));
+        }
+        bookWriteBehindQueue.awaitWritten(userId);
 
         userDto.setId(userId);
-        UserDto updatedUser = userService.updateUser(userDto);
-        log.info("Updated user: {}", updatedUser);
-
-        List<Long> forDeleteBooksIdByUserId = bookService.findAllBooksIdByUserId(updatedUser.getId());
-        log.info("Received all books for delete by user id: {}", forDeleteBooksIdByUserId);
-        forDeleteBooksIdByUserId.stream()
-                .filter(Objects::nonNull)
-                .forEach(bookService::deleteBookById);
-
-        bookRequest.stream()
-                .filter(Objects::nonNull)
-                .map(bookMapper::bookRequestToBookDto)
-                .filter(BookValidator::isValidBookData)
-                .peek(bookDto -> bookDto.setUserId(updatedUser.getId()))
-                .peek(mappedBookDto -> log.info("Mapped book: {}", mappedBookDto))
-                .forEach(bookService::createBook);
+        UpsertResult<UserDto> upsertedUser = userService.updateUser(userDto);
+        UserDto updatedUser = upsertedUser.saved();
+        log.debug("Updated user: {}, inserted: {}", updatedUser, upsertedUser.inserted());
+        mappedBooks.forEach(bookDto -> bookDto.setUserId(updatedUser.getId()));
 
-        List<Long> allBooksIdByUserId = bookService.findAllBooksIdByUserId(updatedUser.getId());
-        log.info("Received all books by user id: {}", allBooksIdByUserId);
+        List<Long> allBooksIdByUserId;
+        if (upsertedUser.inserted()) {
+            allBooksIdByUserId = createBooks(mappedBooks);
+        } else {
+            allBooksIdByUserId = switch (bookUpdateMode) {
+                case REPLACE -> replaceUserBooks(updatedUser.getId(), mappedBooks);
+                case DIFF -> mergeUserBooks(updatedUser.getId(), mappedBooks);
+            };
+        }
+        log.debug("Books of user after update: {}", allBooksIdByUserId);
+        Long version = userService.getUserVersion(updatedUser.getId());
+        userBookIdIndex.put(updatedUser.getId(), version, allBooksIdByUserId);
 
         return UserBookResponse.builder()
                 .userId(updatedUser.getId())
                 .booksIdList(allBooksIdByUserId)
+                .version(version)
                 .build();
     }
 
     /**
      * Getting a user and his books by ID.
      * Getting from database the user ID and the list of ID's of his books upon request of the user ID.
+     * Book IDs are taken from the index if it has the IDs of the same user version, otherwise they are read and indexed.
+     * The response is cached by user ID until the user is updated or deleted.
      * @param userId user ID for getting information about him.
-     * @return UserBookResponse user ID and his books ID.
+     * @return UserBookResponse user ID, his books ID and the version of the user.
      * @throws InvalidRequestDataException if incorrect or null of user ID.
      * @throws NotFoundException if the user with this ID is not in the database.
      */
     @Transactional
+    @Cacheable(cacheNames = CacheConfig.USER_BOOKS_CACHE, key = "#userId")
+    @Admission(AdmissionKind.READ)
     public UserBookResponse getUserWithBooks(Long userId) {
-        log.info("Got user book get request with userId: {}", userId);
+        log.debug("Got user book get request with userId: {}", userId);
         if (userId == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.USER_ID_CAN_NOT_BE_NULL);
 
         UserDto user = userService.getUserById(userId);
-        log.info("Got user: {}", user);
+        log.debug("Got user: {}", user);
         if (user == null) throw new NotFoundException("No have user with id: " + userId);
 
-        List<Long> allBooksIdByUserId = bookService.findAllBooksIdByUserId(user.getId());
-        log.info("Received all books by user id: {}", allBooksIdByUserId);
+        long[] bookIds = userBookIdIndex.get(user.getId(), user.getVersion());
+        if (bookIds == null) {
+            List<Long> allBooksIdByUserId = bookService.findAllBooksIdByUserId(user.getId());
+            log.debug("Received all books by user id: {}", allBooksIdByUserId);
+            bookIds = userBookIdIndex.put(user.getId(), user.getVersion(), allBooksIdByUserId);
+        }
 
         return UserBookResponse.builder()
                 .userId(user.getId())
-                .booksIdList(allBooksIdByUserId)
+                .booksIdList(LongIdList.of(bookIds))
+                .version(user.getVersion())
+                .build();
+    }
+
+    /**
+     * Getting users and their books by a list of IDs in one transaction.
+     * IDs are split into chunks, users of a chunk are read with one IN query and book IDs of the users,
+     * which are not in the book ID index, with one grouped IN query on BOOK.
+     * @param userIds user IDs, repeated IDs are returned once.
+     * @return UserMultiGetResponse found users with their books ID in the order of userIds and IDs of not found users.
+     * @throws InvalidRequestDataException if no user IDs, more than the maximum or null of user ID.
+     */
+    @Transactional(readOnly = true)
+    @Admission(AdmissionKind.READ)
+    public UserMultiGetResponse getUsersWithBooks(List<Long> userIds) {
+        log.debug("Got multi-get request with userIds: {}", userIds);
+        if (userIds == null || userIds.isEmpty() || userIds.size() > MAX_MULTI_GET_IDS) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_USER_IDS + MAX_MULTI_GET_IDS);
+        }
+        if (userIds.contains(null)) throw new InvalidRequestDataException(ErrorMessageTextConstants.USER_ID_CAN_NOT_BE_NULL);
+
+        List<Long> uniqueUserIds = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Map<Long, UserBookResponse> usersById = new HashMap<>();
+        for (int from = 0; from < uniqueUserIds.size(); from += IN_CHUNK_SIZE) {
+            List<Long> chunk = uniqueUserIds.subList(from, Math.min(from + IN_CHUNK_SIZE, uniqueUserIds.size()));
+            getUsersWithBooksChunk(chunk).forEach(user -> usersById.put(user.getUserId(), user));
+        }
+
+        List<UserBookResponse> users = new ArrayList<>(usersById.size());
+        List<Long> notFoundIds = new ArrayList<>();
+        for (Long userId : uniqueUserIds) {
+            UserBookResponse user = usersById.get(userId);
+            if (user == null) {
+                notFoundIds.add(userId);
+            } else {
+                users.add(user);
+            }
+        }
+        log.debug("Found users: {}, not found user ids: {}", users.size(), notFoundIds);
+
+        return UserMultiGetResponse.builder()
+                .users(users)
+                .notFoundIds(notFoundIds)
+                .build();
+    }
+
+    /**
+     * Getting a user with full data of his books by ID.
+     * The user and his books are read with one join query instead of a query per book.
+     * @param userId user ID for getting information about him.
+     * @return UserWithBooksDto user with his books ordered by ID and the version of the user.
+     * @throws InvalidRequestDataException if null of user ID.
+     * @throws NotFoundException if the user with this ID is not in the database.
+     */
+    @Transactional(readOnly = true)
+    @Admission(AdmissionKind.READ)
+    public UserWithBooksDto getUserWithBookDetails(Long userId) {
+        log.debug("Got user with book details get request with userId: {}", userId);
+        if (userId == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.USER_ID_CAN_NOT_BE_NULL);
+
+        UserWithBooksDto user = userService.getUserWithBooksById(userId);
+        if (user == null) throw new NotFoundException("No have user with id: " + userId);
+        log.debug("Got user with books, size: {}", user.getBooks().size());
+
+        return user;
+    }
+
+    /**
+     * Getting a version of the user by ID for the conditional get.
+     * Only the version is read, the user and his books are not.
+     * @param userId user ID.
+     * @return Long version of the user, null if the user is not in the database.
+     * @throws InvalidRequestDataException if null of user ID.
+     */
+    @Transactional(readOnly = true)
+    @Admission(AdmissionKind.READ)
+    public Long getUserVersion(Long userId) {
+        log.debug("Got user version request with userId: {}", userId);
+        if (userId == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.USER_ID_CAN_NOT_BE_NULL);
+
+        return userService.getUserVersion(userId);
+    }
+
+    /**
+     * Getting a page of users, optionally with ID's of their books.
+     * Users are ordered by ID and the page starts after the user ID from the cursor,
+     * so the database seeks by the primary key instead of skipping the rows of the previous pages.
+     * Books of all users of the page are read with one query.
+     * @param cursor cursor from the previous page, null for the first page.
+     * @param limit maximum number of users on the page.
+     * @param includeBooks whether to add ID's of the user books.
+     * @return UserPageResponse users of the page and the cursor of the next page, null if it is the last page.
+     * @throws InvalidRequestDataException if incorrect cursor or limit.
+     */
+    @Transactional(readOnly = true)
+    @Admission(AdmissionKind.READ)
+    public UserPageResponse listUsers(String cursor, int limit, boolean includeBooks) {
+        log.debug("Got user list request with cursor: {}, limit: {}, includeBooks: {}", cursor, limit, includeBooks);
+        if (limit < 1 || limit > MAX_LIST_LIMIT) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_LIMIT + MAX_LIST_LIMIT);
+        }
+
+        long afterId = cursor == null ? 0 : decodeCursor(cursor);
+        List<UserDto> users = userService.findUsersAfterId(afterId, limit + 1);
+        String nextCursor = null;
+        if (users.size() > limit) {
+            users = users.subList(0, limit);
+            nextCursor = encodeCursor(users.get(limit - 1).getId());
+        }
+
+        Map<Long, List<Long>> booksIdByUserId = includeBooks
+                ? bookService.findAllBooksIdByUserIds(users.stream().map(UserDto::getId).toList())
+                : Map.of();
+        log.debug("Received users: {}, books of the users: {}", users.size(), booksIdByUserId.size());
+
+        List<UserListItemResponse> items = users.stream()
+                .map(user -> UserListItemResponse.builder()
+                        .userId(user.getId())
+                        .fullName(user.getFullName())
+                        .title(user.getTitle())
+                        .age(user.getAge())
+                        .booksIdList(includeBooks ? booksIdByUserId.getOrDefault(user.getId(), List.of()) : null)
+                        .build())
+                .toList();
+
+        return UserPageResponse.builder()
+                .users(items)
+                .nextCursor(nextCursor)
                 .build();
     }
 
+    /**
+     * Export of all users with their books.
+     * Users are passed to the consumer one by one while they are read from the database in one read-only transaction.
+     * @param consumer consumer of users with books, for example a writer to the response.
+     */
+    @Transactional(readOnly = true)
+    public void exportUsersWithBooks(Consumer<UserWithBooksDto> consumer) {
+        log.debug("Got export of all users with books");
+        userService.forEachUserWithBooks(consumer);
+    }
+
     /**
      * Deleting a user and his list of books
-     * Deleting a user and his list of books from the database by user ID.
+     * Deleting a user from the database by user ID, his books are deleted by the database cascade.
      * If there is no user with this ID, then nothing happens.
      * @param userId user ID for deleting information about him.
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.USER_BOOKS_CACHE, key = "#userId")
+    @Admission(AdmissionKind.WRITE)
     public void deleteUserWithBooks(Long userId) {
-        log.info("Got user book delete request with user id: {}", userId);
+        log.debug("Got user book delete request with user id: {}", userId);
 
         if (userId != null) {
-            List<Long> allBooksIdByUserId = bookService.findAllBooksIdByUserId(userId);
-            log.info("Book id list for delete: {}", allBooksIdByUserId);
+            int deletedCount = userService.deleteUserById(userId);
+            userBookIdIndex.remove(userId);
+            log.debug("Deleted {} users with books with id: {}", deletedCount, userId);
+        }
+
+    }
+
+    /**
+     * Deleting users and their books by a list of IDs in one transaction.
+     * IDs are split into chunks, users of a chunk are deleted with one IN query,
+     * their books are deleted by the database cascade. Absent IDs are skipped.
+     * @param userIds user IDs, repeated IDs are deleted once.
+     * @return UserBulkDeleteResponse number of deleted users.
+     * @throws InvalidRequestDataException if no user IDs, more than the maximum or null of user ID.
+     */
+    @Transactional
+    @Admission(AdmissionKind.WRITE)
+    public UserBulkDeleteResponse deleteUsersWithBooks(List<Long> userIds) {
+        log.debug("Got user book bulk delete request with user ids: {}", userIds);
+        if (userIds == null || userIds.isEmpty() || userIds.size() > MAX_MULTI_GET_IDS) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_USER_IDS + MAX_MULTI_GET_IDS);
+        }
+        if (userIds.contains(null)) throw new InvalidRequestDataException(ErrorMessageTextConstants.USER_ID_CAN_NOT_BE_NULL);
 
-            userService.deleteUserById(userId);
-            log.info("Deleted user with id: {}", userId);
+        List<Long> uniqueUserIds = new ArrayList<>(new LinkedHashSet<>(userIds));
+        int deletedCount = 0;
+        for (int from = 0; from < uniqueUserIds.size(); from += IN_CHUNK_SIZE) {
+            deletedCount += userService.deleteUsersByIds(
+                    uniqueUserIds.subList(from, Math.min(from + IN_CHUNK_SIZE, uniqueUserIds.size())));
+        }
 
-            if (allBooksIdByUserId != null && !allBooksIdByUserId.isEmpty()) {
-                allBooksIdByUserId.stream()
-                        .filter(Objects::nonNull)
-                        .forEach(bookService::deleteBookById);
+        Cache userBooksCache = cacheManager.getCache(CacheConfig.USER_BOOKS_CACHE);
+        for (Long userId : uniqueUserIds) {
+            userBookIdIndex.remove(userId);
+            if (userBooksCache != null) {
+                userBooksCache.evict(userId);
             }
         }
+        log.debug("Deleted {} users with books", deletedCount);
+
+        return UserBulkDeleteResponse.builder()
+                .deletedCount(deletedCount)
+                .build();
+    }
+
+    /**
+     * Reading a chunk of users of the multi-get, book IDs are taken from the index if they are there.
+     * @param userIds chunk of unique user IDs.
+     * @return List<UserBookResponse> found users with their books ID and versions.
+     */
+    private List<UserBookResponse> getUsersWithBooksChunk(List<Long> userIds) {
+        List<UserDto> users = userService.findUsersByIds(userIds);
+
+        Map<Long, long[]> indexedBookIds = new HashMap<>();
+        List<Long> notIndexedUserIds = new ArrayList<>();
+        for (UserDto user : users) {
+            long[] bookIds = userBookIdIndex.get(user.getId(), user.getVersion());
+            if (bookIds == null) {
+                notIndexedUserIds.add(user.getId());
+            } else {
+                indexedBookIds.put(user.getId(), bookIds);
+            }
+        }
+
+        Map<Long, List<Long>> readBookIds = notIndexedUserIds.isEmpty()
+                ? Map.of()
+                : bookService.findAllBooksIdByUserIds(notIndexedUserIds);
+        log.debug("Received users: {}, indexed books of users: {}, read books of users: {}",
+                users.size(), indexedBookIds.size(), notIndexedUserIds.size());
+
+        return users.stream()
+                .map(user -> {
+                    long[] bookIds = indexedBookIds.get(user.getId());
+                    if (bookIds == null) {
+                        bookIds = userBookIdIndex.put(user.getId(), user.getVersion(),
+                                readBookIds.getOrDefault(user.getId(), List.of()));
+                    }
+
+                    return UserBookResponse.builder()
+                            .userId(user.getId())
+                            .booksIdList(LongIdList.of(bookIds))
+                            .version(user.getVersion())
+                            .build();
+                })
+                .toList();
+    }
+
+    /**
+     * Encoding of the last user ID of the page to the opaque cursor of the next page.
+     * @param userId ID of the last user of the page.
+     * @return String URL safe cursor.
+     */
+    private static String encodeCursor(long userId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(userId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decoding of the last user ID of the previous page from the cursor.
+     * @param cursor cursor from the previous page.
+     * @return long ID of the last user of the previous page.
+     * @throws InvalidRequestDataException if the cursor is not made by encodeCursor.
+     */
+    private static long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_CURSOR);
+        }
+    }
 
+    /**
+     * Mapping and validation of the user from UserBookRequest.
+     * The time of the mapping and the validation is added to the stages of the current request.
+     * @param userBookRequest request with data of user and his books.
+     * @return UserDto valid user dto.
+     * @throws InvalidRequestDataException if incorrect or null of user data.
+     */
+    private UserDto mapValidUser(UserBookRequest userBookRequest) {
+        UserDto userDto = RequestTimings.time(Stage.MAPPING,
+                () -> userMapper.userRequestToUserDto(userBookRequest.getUserRequest()));
+        log.debug("Mapped user request: {}", userDto);
+        if (userDto == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.USER_CAN_NOT_BE_NULL);
+        if (!RequestTimings.time(Stage.VALIDATION, () -> UserValidator.isValidUserData(userDto))) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_USER_DATA);
+        }
+
+        return userDto;
+    }
+
+    /**
+     * Mapping of the books from UserBookRequest, books with incorrect data are skipped.
+     * The time of the mapping and the validation is added to the stages of the current request.
+     * @param userBookRequest request with data of user and his books.
+     * @return List<BookDto> valid book dto list without user ID.
+     * @throws InvalidRequestDataException if book list is null.
+     */
+    private List<BookDto> mapValidBooks(UserBookRequest userBookRequest) {
+        List<BookRequest> bookRequest = userBookRequest.getBookRequests();
+        if (bookRequest == null) throw new InvalidRequestDataException(ErrorMessageTextConstants.BOOK_LIST_CAN_NOT_BE_NULL);
+
+        List<BookDto> mappedBooks = RequestTimings.time(Stage.MAPPING, () -> bookRequest.stream()
+                .filter(Objects::nonNull)
+                .map(bookMapper::bookRequestToBookDto)
+                .toList());
+
+        return RequestTimings.time(Stage.VALIDATION, () -> mappedBooks.stream()
+                .filter(BookValidator::isValidBookData)
+                .peek(mappedBookDto -> log.debug("Mapped book: {}", mappedBookDto))
+                .toList());
+    }
+
+    /**
+     * Replacing all user books with the new ones.
+     * Old books are deleted with one query, new books are created with one batch.
+     * @param userId user ID.
+     * @param books new books of the user.
+     * @return List<Long> IDs of the new books in the order of the books list.
+     */
+    private List<Long> replaceUserBooks(Long userId, List<BookDto> books) {
+        int deletedCount = bookService.deleteBooksByUserId(userId);
+        log.debug("Deleted {} books of user with id: {}", deletedCount, userId);
+
+        return createBooks(books);
+    }
+
+    private LongIdList createBooks(List<BookDto> books) {
+        return LongIdList.of(saveBooks(books)
+                .stream()
+                .peek(createdBook -> log.debug("Created book: {}", createdBook))
+                .mapToLong(BookDto::getId)
+                .toArray());
+    }
+
+    /**
+     * Merging user books with the new ones.
+     * Stored books equal by title, author and page count to the new ones keep their IDs,
+     * the rest of the stored books are deleted with IN queries and the rest of the new books are created with one batch.
+     * @param userId user ID.
+     * @param books new books of the user.
+     * @return List<Long> IDs of the kept and created books in the order of the books list.
+     */
+    private List<Long> mergeUserBooks(Long userId, List<BookDto> books) {
+        Map<BookContent, Deque<Long>> storedBooksId = new HashMap<>();
+        bookService.findAllBooksByUserId(userId)
+                .forEach(storedBook -> storedBooksId
+                        .computeIfAbsent(BookContent.of(storedBook), content -> new ArrayDeque<>())
+                        .add(storedBook.getId()));
+
+        Long[] booksId = new Long[books.size()];
+        List<BookDto> newBooks = new ArrayList<>();
+        for (int i = 0; i < books.size(); i++) {
+            Deque<Long> sameBooksId = storedBooksId.get(BookContent.of(books.get(i)));
+            if (sameBooksId != null && !sameBooksId.isEmpty()) {
+                booksId[i] = sameBooksId.poll();
+            } else {
+                newBooks.add(books.get(i));
+            }
+        }
+
+        List<Long> staleBooksId = storedBooksId.values().stream()
+                .flatMap(Collection::stream)
+                .toList();
+        int deletedCount = 0;
+        for (int from = 0; from < staleBooksId.size(); from += IN_CHUNK_SIZE) {
+            deletedCount += bookService.deleteBooksByIds(
+                    staleBooksId.subList(from, Math.min(from + IN_CHUNK_SIZE, staleBooksId.size())));
+        }
+        log.debug("Deleted {} books of user with id: {}", deletedCount, userId);
+
+        Iterator<BookDto> createdBooks = saveBooks(newBooks).iterator();
+        for (int i = 0; i < booksId.length; i++) {
+            if (booksId[i] == null) {
+                BookDto createdBook = createdBooks.next();
+                log.debug("Created book: {}", createdBook);
+                booksId[i] = createdBook.getId();
+            }
+        }
+
+        return Arrays.asList(booksId);
+    }
+
+    /**
+     * Creating books with one batch, or queueing them with IDs to the write-behind queue if it is enabled.
+     * @param books books with user ID.
+     * @return List<BookDto> the books with IDs in the same order.
+     */
+    private List<BookDto> saveBooks(List<BookDto> books) {
+        return bookWriteBehindQueue.accepts(books.size())
+                ? bookWriteBehindQueue.enqueue(books)
+                : bookService.createBooks(books);
+    }
+
+    /**
+     * Compensation of the user whose books were not written by the write-behind queue.
+     * The user is deleted with his written books, so no user is left with a part of his books.
+     * @param failedBooks books of the user which were not written.
+     */
+    private void compensateUser(BookWriteBehindQueue.FailedBooks failedBooks) {
+        long userId = failedBooks.userId();
+        int deletedCount = userService.deleteUserById(userId);
+        userBookIdIndex.remove(userId);
+        Cache userBooksCache = cacheManager.getCache(CacheConfig.USER_BOOKS_CACHE);
+        if (userBooksCache != null) {
+            userBooksCache.evict(userId);
+        }
+        log.error("Books {} of user {} were not written, deleted users: {}", failedBooks.bookIds(), userId, deletedCount);
+    }
+
+    private record BookContent(String title, String author, long pageCount) {
+        static BookContent of(BookDto bookDto) {
+            return new BookContent(bookDto.getTitle(), bookDto.getAuthor(), bookDto.getPageCount());
+        }
     }
 }
@@ -6,6 +6,8 @@ import com.edu.ulab.app.web.request.BookRequest;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
+import java.util.List;
+
 @Mapper(componentModel = "spring")
 public interface BookMapper {
 
@@ -16,4 +18,8 @@ public interface BookMapper {
     Book bookDtoToBook(BookDto bookDto);
 
     BookDto bookToBookDto(Book book);
+
+    List<Book> bookDtoListToBookList(List<BookDto> bookDtos);
+
+    List<BookDto> bookListToBookDtoList(List<Book> books);
 }
@@ -11,12 +11,22 @@ import java.sql.SQLException;
 public class BookRowMapper implements RowMapper<BookDto> {
     @Override
     public BookDto mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return mapRow(rs, "");
+    }
+
+    /**
+     * Mapping of the book columns with the prefix, used when the book is selected together with other tables.
+     * @param rs result set on the current row.
+     * @param columnPrefix prefix of the book column labels, for example BOOK_ for BOOK_ID.
+     * @return BookDto mapped book.
+     */
+    public BookDto mapRow(ResultSet rs, String columnPrefix) throws SQLException {
         return BookDto.builder()
-                .id(rs.getLong("ID"))
-                .userId(rs.getLong("USER_ID"))
-                .title(rs.getString("TITLE"))
-                .author(rs.getString("AUTHOR"))
-                .pageCount(rs.getInt("PAGE_COUNT"))
+                .id(rs.getLong(columnPrefix + "ID"))
+                .userId(rs.getLong(columnPrefix + "USER_ID"))
+                .title(rs.getString(columnPrefix + "TITLE"))
+                .author(rs.getString(columnPrefix + "AUTHOR"))
+                .pageCount(rs.getInt(columnPrefix + "PAGE_COUNT"))
                 .build();
     }
 }
@@ -4,9 +4,13 @@ import com.edu.ulab.app.dto.UserDto;
 import com.edu.ulab.app.entity.Person;
 import com.edu.ulab.app.web.request.UserRequest;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
 
 @Mapper(componentModel = "spring")
 public interface UserMapper {
+    @Mapping(target = "version", ignore = true)
     UserDto userRequestToUserDto(UserRequest userRequest);
 
     UserRequest userDtoToUserRequest(UserDto userDto);
@@ -14,4 +18,8 @@ public interface UserMapper {
     Person userDtoToPerson(UserDto userDto);
 
     UserDto personToUserDto(Person person);
+
+    List<Person> userDtoListToPersonList(List<UserDto> userDtos);
+
+    List<UserDto> personListToUserDtoList(List<Person> persons);
 }
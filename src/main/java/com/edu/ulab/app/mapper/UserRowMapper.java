@@ -16,6 +16,7 @@ public class UserRowMapper implements RowMapper<UserDto> {
                 .fullName(rs.getString("FULL_NAME"))
                 .title(rs.getString("TITLE"))
                 .age(rs.getInt("AGE"))
+                .version(rs.getLong("VERSION"))
                 .build();
     }
 }
@@ -0,0 +1,123 @@
+package com.edu.ulab.app.mapper;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserBookRowDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.dto.UserWithBooksDto;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Mapping of the PERSON LEFT JOIN BOOK rows ordered by user ID to users with their books.
+ * User columns are mapped by UserRowMapper, book columns with the BOOK_ prefix by BookRowMapper.
+ */
+@Component
+public class UserWithBooksRowMapper {
+    public static final String SELECT_USER_WITH_BOOKS = "SELECT P.ID, P.FULL_NAME, P.TITLE, P.AGE, P.VERSION, "
+            + "B.ID AS BOOK_ID, B.USER_ID AS BOOK_USER_ID, B.TITLE AS BOOK_TITLE, "
+            + "B.AUTHOR AS BOOK_AUTHOR, B.PAGE_COUNT AS BOOK_PAGE_COUNT "
+            + "FROM PERSON P LEFT JOIN BOOK B ON B.USER_ID = P.ID";
+    private static final String BOOK_COLUMN_PREFIX = "BOOK_";
+
+    private final UserRowMapper userRowMapper;
+    private final BookRowMapper bookRowMapper;
+
+    public UserWithBooksRowMapper(UserRowMapper userRowMapper, BookRowMapper bookRowMapper) {
+        this.userRowMapper = userRowMapper;
+        this.bookRowMapper = bookRowMapper;
+    }
+
+    /**
+     * Creating a row callback handler, which passes every user with all his books to the consumer.
+     * Rows must be ordered by user ID, only the books of the current user are held in memory.
+     * @param consumer consumer of users with books.
+     * @return GroupingRowCallbackHandler handler that must be finished after the query.
+     */
+    public GroupingRowCallbackHandler groupingHandler(Consumer<UserWithBooksDto> consumer) {
+        return new GroupingRowCallbackHandler(consumer);
+    }
+
+    /**
+     * Grouping of the JPA join rows ordered by user ID, the same way as the JDBC rows.
+     * @param rows rows of the join query.
+     * @param consumer consumer of users with books.
+     */
+    public static void groupRows(Iterable<UserBookRowDto> rows, Consumer<UserWithBooksDto> consumer) {
+        UserWithBooksDto currentUser = null;
+        for (UserBookRowDto row : rows) {
+            if (currentUser == null || !currentUser.getId().equals(row.getUserId())) {
+                if (currentUser != null) {
+                    consumer.accept(currentUser);
+                }
+                currentUser = UserWithBooksDto.builder()
+                        .id(row.getUserId())
+                        .fullName(row.getFullName())
+                        .title(row.getUserTitle())
+                        .age(row.getAge() == null ? 0 : row.getAge())
+                        .version(row.getVersion() == null ? 0 : row.getVersion())
+                        .books(new ArrayList<>())
+                        .build();
+            }
+            if (row.getBookId() != null) {
+                currentUser.getBooks().add(BookDto.builder()
+                        .id(row.getBookId())
+                        .userId(row.getUserId())
+                        .title(row.getBookTitle())
+                        .author(row.getAuthor())
+                        .pageCount(row.getPageCount() == null ? 0 : row.getPageCount())
+                        .build());
+            }
+        }
+        if (currentUser != null) {
+            consumer.accept(currentUser);
+        }
+    }
+
+    public class GroupingRowCallbackHandler implements RowCallbackHandler {
+        private final Consumer<UserWithBooksDto> consumer;
+        private UserWithBooksDto currentUser;
+        private int rowNum;
+
+        private GroupingRowCallbackHandler(Consumer<UserWithBooksDto> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long userId = rs.getLong("ID");
+            if (currentUser == null || currentUser.getId() != userId) {
+                finish();
+                UserDto user = userRowMapper.mapRow(rs, rowNum);
+                currentUser = UserWithBooksDto.builder()
+                        .id(user.getId())
+                        .fullName(user.getFullName())
+                        .title(user.getTitle())
+                        .age(user.getAge())
+                        .version(user.getVersion())
+                        .books(new ArrayList<>())
+                        .build();
+            }
+
+            rs.getLong(BOOK_COLUMN_PREFIX + "ID");
+            if (!rs.wasNull()) {
+                currentUser.getBooks().add(bookRowMapper.mapRow(rs, BOOK_COLUMN_PREFIX));
+            }
+            rowNum++;
+        }
+
+        /**
+         * Passing the last user to the consumer, must be called after the last row.
+         */
+        public void finish() {
+            if (currentUser != null) {
+                consumer.accept(currentUser);
+                currentUser = null;
+            }
+        }
+    }
+}
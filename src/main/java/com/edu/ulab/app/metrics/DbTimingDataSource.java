@@ -0,0 +1,78 @@
+package com.edu.ulab.app.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Data source adding the time of every statement execution to the DB stage of the current request,
+ * so the stage is measured the same way for JdbcTemplate, Hibernate and any other user of the pool.
+ * Connections and statements are wrapped with JDK proxies, only the execute methods are timed.
+ */
+public class DbTimingDataSource extends DelegatingDataSource {
+
+    public DbTimingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, super.getConnection(), this::invokeConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, super.getConnection(username, password), this::invokeConnection);
+    }
+
+    private Object invokeConnection(Object connection, Method method, Object[] args) throws Throwable {
+        Object result = invoke(connection, method, args);
+        if (result instanceof CallableStatement statement) {
+            return proxy(CallableStatement.class, statement, this::invokeStatement);
+        } else if (result instanceof PreparedStatement statement) {
+            return proxy(PreparedStatement.class, statement, this::invokeStatement);
+        } else if (result instanceof Statement statement) {
+            return proxy(Statement.class, statement, this::invokeStatement);
+        }
+        return result;
+    }
+
+    private Object invokeStatement(Object statement, Method method, Object[] args) throws Throwable {
+        if (!method.getName().startsWith("execute")) {
+            return invoke(statement, method, args);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return invoke(statement, method, args);
+        } finally {
+            RequestTimings.record(RequestTimings.Stage.DB, System.nanoTime() - start);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private interface TargetInvocation {
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, T target, TargetInvocation invocation) {
+        InvocationHandler handler = (proxy, method, args) -> invocation.invoke(target, method, args);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
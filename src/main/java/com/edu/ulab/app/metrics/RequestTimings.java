@@ -0,0 +1,111 @@
+package com.edu.ulab.app.metrics;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Time of the request stages: validation, mapping and database.
+ * The timings of the current request are bound to the handling thread, stages are added up
+ * for every call made while the request is handled, calls outside a request are not recorded.
+ */
+public final class RequestTimings {
+    public static final String ATTRIBUTE = RequestTimings.class.getName();
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final long[] stageNanos = new long[Stage.values().length];
+
+    public enum Stage {
+        VALIDATION,
+        MAPPING,
+        DB
+    }
+
+    /**
+     * Binding of the timings to the current thread.
+     * @param timings timings of the request, null to unbind.
+     * @return RequestTimings timings bound before, they should be bound again when the handling is finished.
+     */
+    public static RequestTimings bind(RequestTimings timings) {
+        RequestTimings previous = CURRENT.get();
+        if (timings == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timings);
+        }
+
+        return previous;
+    }
+
+    /**
+     * @return RequestTimings timings of the request handled by the current thread, null outside a request.
+     */
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Adding the time of a stage to the request handled by the current thread.
+     * @param stage request stage.
+     * @param nanos time of the stage.
+     */
+    public static void record(Stage stage, long nanos) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.stageNanos[stage.ordinal()] += nanos;
+        }
+    }
+
+    /**
+     * Executing a part of the request stage and adding its time.
+     * @param stage request stage.
+     * @param part part of the stage.
+     * @return T result of the part.
+     */
+    public static <T> T time(Stage stage, Supplier<T> part) {
+        long start = System.nanoTime();
+        try {
+            return part.get();
+        } finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return long time from the start of the request.
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return String stages and total time in milliseconds in the format of the Server-Timing header.
+     */
+    public String toServerTiming() {
+        StringBuilder serverTiming = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            appendMillis(serverTiming, stage.name().toLowerCase(Locale.ROOT), ";dur=", stageNanos[stage.ordinal()]);
+            serverTiming.append(", ");
+        }
+        appendMillis(serverTiming, "total", ";dur=", elapsedNanos());
+
+        return serverTiming.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder breakdown = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            appendMillis(breakdown, stage.name().toLowerCase(Locale.ROOT), "=", stageNanos[stage.ordinal()]);
+            breakdown.append(" ms, ");
+        }
+        appendMillis(breakdown, "total", "=", elapsedNanos());
+
+        return breakdown.append(" ms").toString();
+    }
+
+    private static void appendMillis(StringBuilder builder, String name, String separator, long nanos) {
+        builder.append(name).append(separator).append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+    }
+}
@@ -0,0 +1,48 @@
+package com.edu.ulab.app.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Timing of SQL statements executed with JdbcTemplate.
+ * Every statement is recorded to the userbook.sql timer tagged by statement name, backend and exception,
+ * so failed statements are counted by the exception tag.
+ * The DB stage of the current request is recorded by {@link DbTimingDataSource} for all backends.
+ */
+@Component
+public class SqlMetrics {
+    public static final String SQL_TIMER = "userbook.sql";
+
+    private final MeterRegistry meterRegistry;
+
+    public SqlMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Executing the SQL statement and recording its latency to the timer.
+     * @param statement statement name for the metric tag.
+     * @param sql statement execution.
+     * @return T result of the statement.
+     */
+    public <T> T record(String statement, Supplier<T> sql) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return sql.get();
+        } catch (RuntimeException e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(SQL_TIMER)
+                    .description("SQL statements of the JdbcTemplate services")
+                    .tag("statement", statement)
+                    .tag("backend", "jdbc")
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+}
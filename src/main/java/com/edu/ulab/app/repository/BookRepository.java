@@ -1,13 +1,50 @@
 package com.edu.ulab.app.repository;
 
 import com.edu.ulab.app.entity.Book;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface BookRepository extends CrudRepository<Book, Long> {
 
     @Query("select b.id from Book b where b.userId = :userId")
     List<Long> findAllBooksIdByUserId(long userId);
+
+    List<Book> findAllByUserId(long userId);
+
+    @Query("select b.userId as userId, b.id as id from Book b where b.userId in :userIds order by b.id")
+    List<UserBookId> findAllBooksIdByUserIdIn(Collection<Long> userIds);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Book b where b.userId = :userId")
+    int deleteAllByUserId(long userId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Book b where b.id = :id")
+    int deleteBookById(long id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Book b where b.id in :ids")
+    int deleteAllByIdIn(Collection<Long> ids);
+
+    @Query(value = "SELECT * FROM BOOK WHERE AUTHOR_KEY >= :fromKey AND AUTHOR_KEY LIKE :pattern ESCAPE '\\'"
+            + " AND (AUTHOR_KEY > :fromKey OR ID > :afterId) ORDER BY AUTHOR_KEY, ID LIMIT :limit", nativeQuery = true)
+    List<Book> findAllByAuthorPrefix(String fromKey, String pattern, long afterId, int limit);
+
+    @Query(value = "SELECT * FROM BOOK WHERE TITLE_KEY >= :fromKey AND TITLE_KEY LIKE :pattern ESCAPE '\\'"
+            + " AND (TITLE_KEY > :fromKey OR ID > :afterId) ORDER BY TITLE_KEY, ID LIMIT :limit", nativeQuery = true)
+    List<Book> findAllByTitlePrefix(String fromKey, String pattern, long afterId, int limit);
+
+    interface UserBookId {
+        Long getUserId();
+
+        Long getId();
+    }
 }
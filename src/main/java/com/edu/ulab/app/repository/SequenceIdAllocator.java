@@ -0,0 +1,60 @@
+package com.edu.ulab.app.repository;
+
+import com.edu.ulab.app.metrics.SqlMetrics;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * IDs of the users and books inserted with JdbcTemplate, taken from the blocks of PERSON_SEQ and BOOK_SEQ
+ * the same way as the pooled-lo optimizer of Hibernate takes them for the JPA backend:
+ * every value of the sequence starts a block of {@link #BLOCK_SIZE} IDs, so both backends use the same ID space
+ * and the sequence is read once per block instead of once per row.
+ * IDs of a block not used before the restart are skipped.
+ */
+@Component
+public class SequenceIdAllocator {
+    /**
+     * Increment of PERSON_SEQ and BOOK_SEQ and allocation size of their Hibernate generators.
+     */
+    public static final int BLOCK_SIZE = 50;
+
+    private final IdBlock personIds;
+    private final IdBlock bookIds;
+
+    public SequenceIdAllocator(JdbcTemplate jdbcTemplate, SqlMetrics sqlMetrics) {
+        this.personIds = new IdBlock(jdbcTemplate, sqlMetrics, "PERSON_SEQ", "select_person_id_block");
+        this.bookIds = new IdBlock(jdbcTemplate, sqlMetrics, "BOOK_SEQ", "select_book_id_block");
+    }
+
+    public long nextPersonId() {
+        return personIds.next();
+    }
+
+    public long nextBookId() {
+        return bookIds.next();
+    }
+
+    private static final class IdBlock {
+        private final JdbcTemplate jdbcTemplate;
+        private final SqlMetrics sqlMetrics;
+        private final String nextBlockSql;
+        private final String statementName;
+        private long nextId;
+        private long blockEnd;
+
+        private IdBlock(JdbcTemplate jdbcTemplate, SqlMetrics sqlMetrics, String sequenceName, String statementName) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.sqlMetrics = sqlMetrics;
+            this.nextBlockSql = "SELECT NEXT VALUE FOR " + sequenceName;
+            this.statementName = statementName;
+        }
+
+        private synchronized long next() {
+            if (nextId == blockEnd) {
+                nextId = sqlMetrics.record(statementName, () -> jdbcTemplate.queryForObject(nextBlockSql, Long.class));
+                blockEnd = nextId + BLOCK_SIZE;
+            }
+            return nextId++;
+        }
+    }
+}
@@ -1,8 +1,57 @@
 package com.edu.ulab.app.repository;
 
+import com.edu.ulab.app.dto.UserBookRowDto;
 import com.edu.ulab.app.entity.Person;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 public interface UserRepository extends CrudRepository<Person, Long> {
 
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.edu.ulab.app.dto.UserBookRowDto(p.id, p.fullName, p.title, p.age, p.version, "
+            + "b.id, b.title, b.author, b.pageCount) "
+            + "from Person p left join Book b on b.userId = p.id order by p.id, b.id")
+    Stream<UserBookRowDto> streamAllUsersWithBooks();
+
+    @Query("select new com.edu.ulab.app.dto.UserBookRowDto(p.id, p.fullName, p.title, p.age, p.version, "
+            + "b.id, b.title, b.author, b.pageCount) "
+            + "from Person p left join Book b on b.userId = p.id where p.id = :id order by b.id")
+    List<UserBookRowDto> findUserWithBooksById(long id);
+
+    List<Person> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    @Query("select p.version from Person p where p.id = :id")
+    Optional<Long> findVersionById(long id);
+
+    @Transactional
+    @Modifying
+    @Query("update Person p set p.version = p.version + 1 where p.id = :id")
+    int incrementVersion(long id);
+
+    @Transactional
+    @Modifying
+    @Query("update Person p set p.version = p.version + 1 where p.id = :id and p.version = :expectedVersion")
+    int incrementVersion(long id, long expectedVersion);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Person p where p.id = :id")
+    int deletePersonById(long id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Person p where p.id in :ids")
+    int deleteAllByIdIn(Collection<Long> ids);
 }
@@ -0,0 +1,138 @@
+package com.edu.ulab.app.repository.memory;
+
+import com.edu.ulab.app.repository.memory.UserBookMemoryStore.BookRow;
+import com.edu.ulab.app.search.BookSearchField;
+import com.edu.ulab.app.search.BookWords;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Search indexes of the books of the memory store, the same as the indexes of the database backends:
+ * sorted lower case fields with book IDs for the prefix search and sorted book IDs of every word for the word search.
+ * Indexes are concurrent and are changed after the books, so a search may return IDs of just removed books,
+ * the store skips them.
+ */
+class BookSearchIndex {
+    private static final Comparator<KeyedBookId> KEY_ORDER = Comparator.comparing(KeyedBookId::key)
+            .thenComparingLong(KeyedBookId::id);
+
+    private final Map<BookSearchField, NavigableSet<KeyedBookId>> keys = new EnumMap<>(BookSearchField.class);
+    private final Map<BookSearchField, Map<String, NavigableSet<Long>>> words = new EnumMap<>(BookSearchField.class);
+
+    private record KeyedBookId(String key, long id) {
+    }
+
+    BookSearchIndex() {
+        for (BookSearchField field : BookSearchField.values()) {
+            keys.put(field, new ConcurrentSkipListSet<>(KEY_ORDER));
+            words.put(field, new ConcurrentHashMap<>());
+        }
+    }
+
+    void add(BookRow book) {
+        for (BookSearchField field : BookSearchField.values()) {
+            String text = text(book, field);
+            if (text == null) {
+                continue;
+            }
+
+            keys.get(field).add(new KeyedBookId(BookWords.key(text), book.id()));
+            Map<String, NavigableSet<Long>> bookIdsByWord = words.get(field);
+            for (String word : BookWords.words(text)) {
+                bookIdsByWord.compute(word, (w, bookIds) -> {
+                    NavigableSet<Long> ids = bookIds == null ? new ConcurrentSkipListSet<>() : bookIds;
+                    ids.add(book.id());
+                    return ids;
+                });
+            }
+        }
+    }
+
+    void remove(BookRow book) {
+        for (BookSearchField field : BookSearchField.values()) {
+            String text = text(book, field);
+            if (text == null) {
+                continue;
+            }
+
+            keys.get(field).remove(new KeyedBookId(BookWords.key(text), book.id()));
+            Map<String, NavigableSet<Long>> bookIdsByWord = words.get(field);
+            for (String word : BookWords.words(text)) {
+                bookIdsByWord.computeIfPresent(word, (w, bookIds) -> {
+                    bookIds.remove(book.id());
+                    return bookIds.isEmpty() ? null : bookIds;
+                });
+            }
+        }
+    }
+
+    void clear() {
+        keys.values().forEach(NavigableSet::clear);
+        words.values().forEach(Map::clear);
+    }
+
+    /**
+     * @param field searched field.
+     * @param prefix lower case prefix.
+     * @param afterKey lower case field of the last book of the previous page, null for the first page.
+     * @param afterId ID of the last book of the previous page.
+     * @param limit maximum number of IDs.
+     * @return List<Long> IDs of the books in the order of the field and ID.
+     */
+    List<Long> findByPrefix(BookSearchField field, String prefix, String afterKey, long afterId, int limit) {
+        KeyedBookId from = afterKey == null ? new KeyedBookId(prefix, 0) : new KeyedBookId(afterKey, afterId);
+        List<Long> ids = new ArrayList<>(limit);
+        for (KeyedBookId keyedId : keys.get(field).tailSet(from, false)) {
+            if (ids.size() == limit || !keyedId.key().startsWith(prefix)) {
+                break;
+            }
+            ids.add(keyedId.id());
+        }
+        return ids;
+    }
+
+    /**
+     * IDs of the first word are read in order and the IDs in the sets of all the other words are kept.
+     * @param field searched field.
+     * @param words lower case words, not empty.
+     * @param afterId ID of the last book of the previous page, 0 for the first page.
+     * @param limit maximum number of IDs.
+     * @return List<Long> IDs of the books in ascending order.
+     */
+    List<Long> findByWords(BookSearchField field, List<String> words, long afterId, int limit) {
+        Map<String, NavigableSet<Long>> bookIdsByWord = this.words.get(field);
+        List<NavigableSet<Long>> wordBookIds = new ArrayList<>(words.size());
+        for (String word : words) {
+            NavigableSet<Long> bookIds = bookIdsByWord.get(word);
+            if (bookIds == null) {
+                return List.of();
+            }
+            wordBookIds.add(bookIds);
+        }
+
+        List<Long> ids = new ArrayList<>(limit);
+        for (Long id : wordBookIds.get(0).tailSet(afterId, false)) {
+            if (ids.size() == limit) {
+                break;
+            }
+            if (wordBookIds.stream().allMatch(bookIds -> bookIds.contains(id))) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static String text(BookRow book, BookSearchField field) {
+        return switch (field) {
+            case AUTHOR -> book.author();
+            case TITLE -> book.title();
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package com.edu.ulab.app.repository.memory;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Hash map with primitive long keys, so the keys are not boxed.
+ * Open addressing with linear probing, removed entries are closed by shifting the following entries back.
+ * Not thread safe, the map of the store is guarded by the lock of its stripe.
+ * @param <V> type of values, null values are not allowed.
+ */
+class LongHashMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @param key key.
+     * @return V value of the key, null if the key is absent.
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param key key.
+     * @param value not null value.
+     * @return V previous value of the key, null if the key was absent.
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        int mask = keys.length - 1;
+        int i = index(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * 3 / 4) {
+            resize(keys.length * 2);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param key key.
+     * @return V removed value of the key, null if the key was absent.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int mask = keys.length - 1;
+        int i = index(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V removed = (V) values[i];
+                shiftBack(i, mask);
+                size--;
+                return removed;
+            }
+        }
+
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEachValue(Consumer<V> consumer) {
+        for (Object value : values) {
+            if (value != null) {
+                consumer.accept((V) value);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Closing the slot of the removed entry, entries of the probe chain after it are moved back,
+     * so the lookup doesn't stop at the empty slot before reaching them.
+     */
+    private void shiftBack(int removed, int mask) {
+        int empty = removed;
+        for (int i = (removed + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            int home = index(keys[i], mask);
+            // the entry may move to the empty slot only if the slot is between its home slot and its current slot
+            if (((i - home) & mask) >= ((i - empty) & mask)) {
+                keys[empty] = keys[i];
+                values[empty] = values[i];
+                empty = i;
+            }
+        }
+        values[empty] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = index(oldKeys[j], mask);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * Sequential IDs are spread over the table by the Fibonacci hashing.
+     */
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int index(long key, int mask) {
+        return hash(key) & mask;
+    }
+}
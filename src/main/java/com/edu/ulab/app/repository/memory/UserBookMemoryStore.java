@@ -0,0 +1,481 @@
+package com.edu.ulab.app.repository.memory;
+
+import com.edu.ulab.app.search.BookSearchField;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory store of users and books for the memory backend.
+ * Rows are kept in maps with primitive long keys split into lock stripes by ID, so operations on
+ * different rows rarely wait for each other and reads of one stripe don't block each other.
+ * Book IDs of a user are kept in the sorted array of the stripe of the user.
+ * IDs of all users are kept in a sorted set, so a page of users is read from the position of the previous page.
+ * Books are added to the search index after they are saved and removed from it after they are removed.
+ * Every operation locks one stripe at a time, so it is atomic for one row, but there are no transactions:
+ * a facade call that fails in the middle keeps the changes made before the failure.
+ * Changes of a user and of his books also take the lock of the user, which is held until the end of the transaction
+ * as a row lock of the database, so concurrent updates of one user are applied one after another
+ * and books are never added to a removed user.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "user-book.backend", havingValue = "memory")
+public class UserBookMemoryStore {
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final long[] NO_IDS = new long[0];
+    private static final Duration USER_LOCK_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong userIdSequence = new AtomicLong();
+    private final AtomicLong bookIdSequence = new AtomicLong();
+    private final BookSearchIndex searchIndex = new BookSearchIndex();
+    private final NavigableSet<Long> userIds = new ConcurrentSkipListSet<>();
+    private final UserLocks userLocks = new UserLocks(USER_LOCK_TIMEOUT);
+
+    public record UserRow(long id, String fullName, String title, int age, long version) {
+    }
+
+    public record BookRow(long id, long userId, String title, String author, long pageCount) {
+    }
+
+    public UserBookMemoryStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        log.info("Users and books are stored in memory with {} lock stripes", STRIPES);
+    }
+
+    public long nextUserId() {
+        return userIdSequence.incrementAndGet();
+    }
+
+    public long nextBookId() {
+        return bookIdSequence.incrementAndGet();
+    }
+
+    /**
+     * @param id user ID.
+     * @return UserRow user, null if there is no user with this ID.
+     */
+    public UserRow getUser(long id) {
+        Stripe stripe = stripe(id);
+        Lock lock = stripe.lock.readLock();
+        lock.lock();
+        try {
+            return stripe.users.get(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changing the user atomically, the user is locked until the end of the transaction
+     * and the stripe of the user is locked while the function is applied.
+     * @param id user ID.
+     * @param change function from the current user, null if absent, to the new user, null to remove the user.
+     * @return UserRow new user, null if there is no user after the change.
+     */
+    public UserRow computeUser(long id, UnaryOperator<UserRow> change) {
+        return userLocks.withLock(id, () -> {
+            Stripe stripe = stripe(id);
+            Lock lock = stripe.lock.writeLock();
+            lock.lock();
+            try {
+                UserRow user = change.apply(stripe.users.get(id));
+                if (user == null) {
+                    if (stripe.users.remove(id) != null) {
+                        userIds.remove(id);
+                    }
+                } else if (stripe.users.put(id, user) == null) {
+                    userIds.add(id);
+                }
+                return user;
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Removing the user with his books, as the cascade of the database.
+     * @param id user ID.
+     * @return boolean whether the user was removed.
+     */
+    public boolean removeUser(long id) {
+        return userLocks.withLock(id, () -> {
+            Stripe stripe = stripe(id);
+            Lock lock = stripe.lock.writeLock();
+            lock.lock();
+            try {
+                if (stripe.users.remove(id) == null) {
+                    return false;
+                }
+                userIds.remove(id);
+            } finally {
+                lock.unlock();
+            }
+            removeBooksOfUser(id);
+
+            return true;
+        });
+    }
+
+    /**
+     * Getting a page of users ordered by ID, the sorted set of user IDs is read from the ID of the previous page.
+     * @param afterId ID of the last user of the previous page.
+     * @param limit maximum number of users on the page.
+     * @return List<UserRow> users with IDs greater than afterId in the order of ID.
+     */
+    public List<UserRow> findUsersAfterId(long afterId, int limit) {
+        List<UserRow> users = new ArrayList<>(Math.min(limit, 1024));
+        for (Long id : userIds.tailSet(afterId, false)) {
+            if (users.size() == limit) {
+                break;
+            }
+            UserRow user = getUser(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * @return long[] IDs of all users in ascending order.
+     */
+    public long[] getAllUserIds() {
+        return userIds.stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    /**
+     * @param id book ID.
+     * @return BookRow book, null if there is no book with this ID.
+     */
+    public BookRow getBook(long id) {
+        Stripe stripe = stripe(id);
+        Lock lock = stripe.lock.readLock();
+        lock.lock();
+        try {
+            return stripe.books.get(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Saving the book and adding its ID to the book IDs of the user, the user is locked until the end of the transaction.
+     * If the book moves to another user, its ID is removed from the book IDs of the previous user.
+     * @param book book with ID.
+     * @throws DataIntegrityViolationException if there is no user of the book.
+     */
+    public void putBook(BookRow book) {
+        userLocks.withLock(book.userId(), () -> {
+            checkUserExists(book.userId());
+            Stripe stripe = stripe(book.id());
+            BookRow previous;
+            Lock lock = stripe.lock.writeLock();
+            lock.lock();
+            try {
+                previous = stripe.books.put(book.id(), book);
+            } finally {
+                lock.unlock();
+            }
+
+            if (previous == null || previous.userId() != book.userId()) {
+                if (previous != null) {
+                    removeBookIds(previous.userId(), new long[]{book.id()});
+                }
+                addBookIds(book.userId(), new long[]{book.id()});
+            }
+            if (previous != null) {
+                searchIndex.remove(previous);
+            }
+            searchIndex.add(book);
+            return null;
+        });
+    }
+
+    /**
+     * Saving new books of one user, their IDs are added to the book IDs of the user at once.
+     * The user is locked until the end of the transaction, so his removal waits for the books and removes them too.
+     * @param userId user ID of all books.
+     * @param books new books with IDs.
+     * @throws DataIntegrityViolationException if there is no user with this ID.
+     */
+    public void putNewBooks(long userId, List<BookRow> books) {
+        userLocks.withLock(userId, () -> {
+            checkUserExists(userId);
+            long[] ids = new long[books.size()];
+            for (int i = 0; i < ids.length; i++) {
+                BookRow book = books.get(i);
+                ids[i] = book.id();
+                Stripe stripe = stripe(book.id());
+                Lock lock = stripe.lock.writeLock();
+                lock.lock();
+                try {
+                    stripe.books.put(book.id(), book);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            addBookIds(userId, ids);
+            books.forEach(searchIndex::add);
+            return null;
+        });
+    }
+
+    /**
+     * Removing the book, the user of the book is locked until the end of the transaction.
+     * @param id book ID.
+     * @return boolean whether the book was removed.
+     */
+    public boolean removeBook(long id) {
+        BookRow book = getBook(id);
+        if (book == null) {
+            return false;
+        }
+
+        return userLocks.withLock(book.userId(), () -> {
+            Stripe stripe = stripe(id);
+            BookRow removed;
+            Lock lock = stripe.lock.writeLock();
+            lock.lock();
+            try {
+                removed = stripe.books.remove(id);
+            } finally {
+                lock.unlock();
+            }
+
+            if (removed == null) {
+                return false;
+            }
+            removeBookIds(removed.userId(), new long[]{id});
+            searchIndex.remove(removed);
+            return true;
+        });
+    }
+
+    /**
+     * Removing all books of the user, the user is locked until the end of the transaction.
+     * @param userId user ID.
+     * @return int number of removed books.
+     */
+    public int removeBooksOfUser(long userId) {
+        return userLocks.withLock(userId, () -> {
+            Stripe userStripe = stripe(userId);
+            long[] bookIds;
+            Lock userLock = userStripe.lock.writeLock();
+            userLock.lock();
+            try {
+                bookIds = userStripe.bookIdsByUserId.remove(userId);
+            } finally {
+                userLock.unlock();
+            }
+
+            if (bookIds == null) {
+                return 0;
+            }
+            for (long bookId : bookIds) {
+                Stripe stripe = stripe(bookId);
+                Lock lock = stripe.lock.writeLock();
+                lock.lock();
+                BookRow removed;
+                try {
+                    removed = stripe.books.remove(bookId);
+                } finally {
+                    lock.unlock();
+                }
+                if (removed != null) {
+                    searchIndex.remove(removed);
+                }
+            }
+            return bookIds.length;
+        });
+    }
+
+    /**
+     * @param userId user ID.
+     * @return long[] IDs of the user books in ascending order, the array must not be changed.
+     */
+    public long[] getBookIds(long userId) {
+        Stripe stripe = stripe(userId);
+        Lock lock = stripe.lock.readLock();
+        lock.lock();
+        try {
+            long[] bookIds = stripe.bookIdsByUserId.get(userId);
+            return bookIds == null ? NO_IDS : bookIds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param userId user ID.
+     * @return List<BookRow> books of the user in the order of ID.
+     */
+    public List<BookRow> getBooks(long userId) {
+        long[] bookIds = getBookIds(userId);
+        if (bookIds.length == 0) {
+            return Collections.emptyList();
+        }
+
+        List<BookRow> books = new ArrayList<>(bookIds.length);
+        for (long bookId : bookIds) {
+            BookRow book = getBook(bookId);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Getting a page of books with the field starting with the prefix.
+     * @param field searched field.
+     * @param prefix lower case prefix.
+     * @param afterKey lower case field of the last book of the previous page, null for the first page.
+     * @param afterId ID of the last book of the previous page.
+     * @param limit maximum number of books on the page.
+     * @return List<BookRow> books in the order of the field and ID.
+     */
+    public List<BookRow> findBooksByPrefix(BookSearchField field, String prefix, String afterKey, long afterId, int limit) {
+        return getBooks(searchIndex.findByPrefix(field, prefix, afterKey, afterId, limit));
+    }
+
+    /**
+     * Getting a page of books with all words in the field.
+     * @param field searched field.
+     * @param words lower case words, not empty.
+     * @param afterId ID of the last book of the previous page, 0 for the first page.
+     * @param limit maximum number of books on the page.
+     * @return List<BookRow> books in the order of ID.
+     */
+    public List<BookRow> findBooksByWords(BookSearchField field, List<String> words, long afterId, int limit) {
+        return getBooks(searchIndex.findByWords(field, words, afterId, limit));
+    }
+
+    /**
+     * Removing all users and books, IDs are not reset.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            Lock lock = stripe.lock.writeLock();
+            lock.lock();
+            try {
+                stripe.users.clear();
+                stripe.books.clear();
+                stripe.bookIdsByUserId.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+        userIds.clear();
+        searchIndex.clear();
+    }
+
+    private List<BookRow> getBooks(List<Long> bookIds) {
+        List<BookRow> books = new ArrayList<>(bookIds.size());
+        for (long bookId : bookIds) {
+            BookRow book = getBook(bookId);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * The counterpart of the foreign key of BOOK.USER_ID, checked while the user is locked.
+     */
+    private void checkUserExists(long userId) {
+        if (getUser(userId) == null) {
+            throw new DataIntegrityViolationException("No user with id " + userId + " for the books");
+        }
+    }
+
+    private void addBookIds(long userId, long[] ids) {
+        Arrays.sort(ids);
+        Stripe stripe = stripe(userId);
+        Lock lock = stripe.lock.writeLock();
+        lock.lock();
+        try {
+            long[] bookIds = stripe.bookIdsByUserId.get(userId);
+            stripe.bookIdsByUserId.put(userId, bookIds == null ? ids : merge(bookIds, ids));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeBookIds(long userId, long[] ids) {
+        Stripe stripe = stripe(userId);
+        Lock lock = stripe.lock.writeLock();
+        lock.lock();
+        try {
+            long[] bookIds = stripe.bookIdsByUserId.get(userId);
+            if (bookIds == null) {
+                return;
+            }
+            long[] keptIds = Arrays.stream(bookIds)
+                    .filter(bookId -> Arrays.binarySearch(ids, bookId) < 0)
+                    .toArray();
+            if (keptIds.length == 0) {
+                stripe.bookIdsByUserId.remove(userId);
+            } else {
+                stripe.bookIdsByUserId.put(userId, keptIds);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Arrays of book IDs are replaced instead of changed, so the array returned by getBookIds stays unchanged.
+     */
+    private static long[] merge(long[] sortedIds, long[] sortedNewIds) {
+        long[] merged = new long[sortedIds.length + sortedNewIds.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < sortedIds.length && j < sortedNewIds.length) {
+            merged[k++] = sortedIds[i] <= sortedNewIds[j] ? sortedIds[i++] : sortedNewIds[j++];
+        }
+        while (i < sortedIds.length) {
+            merged[k++] = sortedIds[i++];
+        }
+        while (j < sortedNewIds.length) {
+            merged[k++] = sortedNewIds[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * The stripe is selected by the high bits of the hash, the maps of the stripe use the low bits.
+     */
+    private Stripe stripe(long id) {
+        return stripes[LongHashMap.hash(id) >>> (Integer.SIZE - STRIPE_BITS)];
+    }
+
+    private static class Stripe {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final LongHashMap<UserRow> users = new LongHashMap<>();
+        private final LongHashMap<BookRow> books = new LongHashMap<>();
+        private final LongHashMap<long[]> bookIdsByUserId = new LongHashMap<>();
+    }
+}
@@ -0,0 +1,86 @@
+package com.edu.ulab.app.repository.memory;
+
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Locks of the users of the memory store, the counterpart of the row locks of the database.
+ * A change of a user or of his books holds the lock of the user until the end of the current transaction,
+ * or until the end of the change outside of a transaction, so a facade call sees no concurrent changes of its user
+ * between its store operations. Locks are reentrant and are kept in the map only while they are used.
+ * A lock not acquired in the timeout fails the change with {@link CannotAcquireLockException}, as the lock timeout of the database.
+ */
+class UserLocks {
+    private final ConcurrentHashMap<Long, UserLock> locks = new ConcurrentHashMap<>();
+    private final long timeoutNanos;
+
+    private static final class UserLock {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int users;
+    }
+
+    UserLocks(Duration timeout) {
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * @param userId ID of the changed user.
+     * @param change change of the user or of his books.
+     * @return T result of the change.
+     * @throws CannotAcquireLockException if the lock of the user is not acquired in the timeout.
+     */
+    <T> T withLock(long userId, Supplier<T> change) {
+        UserLock userLock = acquire(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    release(userId, userLock);
+                }
+            });
+            return change.get();
+        }
+
+        try {
+            return change.get();
+        } finally {
+            release(userId, userLock);
+        }
+    }
+
+    private UserLock acquire(long userId) {
+        UserLock userLock = locks.compute(userId, (id, current) -> {
+            UserLock used = current == null ? new UserLock() : current;
+            used.users++;
+            return used;
+        });
+
+        boolean locked = false;
+        try {
+            locked = userLock.lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!locked) {
+            unuse(userId);
+            throw new CannotAcquireLockException("Lock of user with id " + userId + " was not acquired");
+        }
+        return userLock;
+    }
+
+    private void release(long userId, UserLock userLock) {
+        userLock.lock.unlock();
+        unuse(userId);
+    }
+
+    private void unuse(long userId) {
+        locks.computeIfPresent(userId, (id, used) -> --used.users == 0 ? null : used);
+    }
+}
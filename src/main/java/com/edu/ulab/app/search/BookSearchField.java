@@ -0,0 +1,22 @@
+package com.edu.ulab.app.search;
+
+/**
+ * Searched field of the book.
+ */
+public enum BookSearchField {
+    AUTHOR("AUTHOR_KEY"),
+    TITLE("TITLE_KEY");
+
+    private final String keyColumn;
+
+    BookSearchField(String keyColumn) {
+        this.keyColumn = keyColumn;
+    }
+
+    /**
+     * @return String column of BOOK with the lower case value of the field.
+     */
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+}
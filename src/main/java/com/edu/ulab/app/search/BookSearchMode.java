@@ -0,0 +1,15 @@
+package com.edu.ulab.app.search;
+
+/**
+ * Matching of the searched text with the field of the book.
+ */
+public enum BookSearchMode {
+    /**
+     * The field starts with the text, case insensitive, books are ordered by the field and ID.
+     */
+    PREFIX,
+    /**
+     * The field contains all words of the text, case insensitive, books are ordered by ID.
+     */
+    WORDS
+}
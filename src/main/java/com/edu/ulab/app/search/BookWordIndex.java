@@ -0,0 +1,277 @@
+package com.edu.ulab.app.search;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.metrics.SqlMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * In-process inverted index of the words of the books of the database backends:
+ * sorted book IDs of every word of author and title with their count, so the word search reads the IDs
+ * of the rarest word in order and keeps the books which have all other words without reading BOOK.
+ * The index is loaded from BOOK on the start and is changed by the writers of books, services and the write-behind queue,
+ * after the commit of their transaction, books deleted by the cascade of a user are removed by the user ID.
+ * The books found by the index are read from BOOK and their words are checked again, so a search never returns
+ * a book which doesn't match, and IDs of the books which are absent in BOOK are removed from the index.
+ * The memory backend has its own indexes in the store, there this index is empty.
+ * Costs: the index keeps author and title of every book in the heap in addition to the IDs of every word,
+ * so its memory grows with BOOK, and it is loaded by one query over all of BOOK before the application starts.
+ * Every instance of the application has its own index, which sees only the writes of this instance:
+ * books written by another instance or directly in the database are not found until the restart.
+ */
+@Slf4j
+@Component
+public class BookWordIndex {
+    private final boolean enabled;
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlMetrics sqlMetrics;
+    private final Map<BookSearchField, Map<String, WordBookIds>> bookIdsByWord = new EnumMap<>(BookSearchField.class);
+    private final Map<Long, IndexedBook> booksById = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> bookIdsByUserId = new ConcurrentHashMap<>();
+
+    /**
+     * Sorted IDs of the books with the word and their count, the count is changed under the lock of the index
+     * and read without it to choose the rarest word of the search.
+     */
+    private static final class WordBookIds {
+        private final NavigableSet<Long> bookIds = new ConcurrentSkipListSet<>();
+        private volatile int size;
+    }
+
+    /**
+     * Indexed fields of the book, the words of the old fields are removed when the book is changed.
+     */
+    private record IndexedBook(long userId, String author, String title) {
+        private String text(BookSearchField field) {
+            return switch (field) {
+                case AUTHOR -> author;
+                case TITLE -> title;
+            };
+        }
+    }
+
+    public BookWordIndex(@Value("${user-book.backend:jdbc}") String backend,
+                         JdbcTemplate jdbcTemplate,
+                         SqlMetrics sqlMetrics) {
+        this.enabled = !"memory".equals(backend);
+        this.jdbcTemplate = jdbcTemplate;
+        this.sqlMetrics = sqlMetrics;
+        for (BookSearchField field : BookSearchField.values()) {
+            bookIdsByWord.put(field, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Loading the words of all books, the migrations have been applied before.
+     */
+    @PostConstruct
+    void load() {
+        final String GET_ALL_BOOK_WORDS_SQL = "SELECT ID, USER_ID, AUTHOR, TITLE FROM BOOK";
+
+        if (!enabled) {
+            return;
+        }
+
+        sqlMetrics.record("select_book_words", () -> {
+            jdbcTemplate.query(GET_ALL_BOOK_WORDS_SQL, rs -> {
+                put(rs.getLong("ID"), new IndexedBook(rs.getLong("USER_ID"), rs.getString("AUTHOR"), rs.getString("TITLE")));
+            });
+            return null;
+        });
+        log.info("Book word index: {} books", booksById.size());
+    }
+
+    /**
+     * Adding the created or updated books, after the commit of the current transaction.
+     * @param books books with IDs.
+     */
+    public void indexBooks(Collection<BookDto> books) {
+        if (!enabled || books.isEmpty()) {
+            return;
+        }
+
+        List<BookDto> indexedBooks = List.copyOf(books);
+        afterCommit(() -> indexedBooks.forEach(book -> put(book.getId(),
+                new IndexedBook(book.getUserId(), book.getAuthor(), book.getTitle()))));
+    }
+
+    /**
+     * Removing the deleted books, after the commit of the current transaction.
+     * @param bookIds IDs of the deleted books.
+     */
+    public void removeBooks(Collection<Long> bookIds) {
+        if (!enabled || bookIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> removedIds = List.copyOf(bookIds);
+        afterCommit(() -> removedIds.forEach(this::remove));
+    }
+
+    /**
+     * Removing all books of the deleted users, after the commit of the current transaction.
+     * @param userIds IDs of the users whose books are deleted.
+     */
+    public void removeBooksOfUsers(Collection<Long> userIds) {
+        if (!enabled || userIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> removedUserIds = List.copyOf(userIds);
+        afterCommit(() -> removedUserIds.forEach(userId -> {
+            Set<Long> bookIds = bookIdsByUserId.get(userId);
+            if (bookIds != null) {
+                List.copyOf(bookIds).forEach(this::remove);
+            }
+        }));
+    }
+
+    /**
+     * Getting a page of books with all words in the field, ordered by ID.
+     * IDs are taken from the index in pages of the missing size, their books are read by the loader
+     * and the books which don't have all words any more are skipped.
+     * @param field searched field.
+     * @param words lower case words, not empty.
+     * @param afterId ID of the last book of the previous page, 0 for the first page.
+     * @param limit maximum number of books on the page.
+     * @param loader reader of the books by IDs, in any order.
+     * @return List<BookDto> books of the page.
+     */
+    public List<BookDto> findBooks(BookSearchField field, List<String> words, long afterId, int limit,
+                                   Function<List<Long>, List<BookDto>> loader) {
+        List<BookDto> books = new ArrayList<>(limit);
+        long fromId = afterId;
+        while (books.size() < limit) {
+            int missing = limit - books.size();
+            List<Long> ids = findBookIds(field, words, fromId, missing);
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            Map<Long, BookDto> loadedBooks = new HashMap<>();
+            loader.apply(ids).forEach(book -> loadedBooks.put(book.getId(), book));
+            for (Long id : ids) {
+                BookDto book = loadedBooks.get(id);
+                if (book == null) {
+                    remove(id);
+                } else if (BookWords.words(text(book, field)).containsAll(words)) {
+                    books.add(book);
+                }
+            }
+
+            if (ids.size() < missing) {
+                break;
+            }
+            fromId = ids.get(ids.size() - 1);
+        }
+        return books;
+    }
+
+    private List<Long> findBookIds(BookSearchField field, List<String> words, long afterId, int limit) {
+        Map<String, WordBookIds> fieldBookIdsByWord = bookIdsByWord.get(field);
+        List<NavigableSet<Long>> wordBookIds = new ArrayList<>(words.size());
+        WordBookIds rarest = null;
+        for (String word : words) {
+            WordBookIds bookIds = fieldBookIdsByWord.get(word);
+            if (bookIds == null) {
+                return List.of();
+            }
+            wordBookIds.add(bookIds.bookIds);
+            if (rarest == null || bookIds.size < rarest.size) {
+                rarest = bookIds;
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(limit);
+        for (Long id : rarest.bookIds.tailSet(afterId, false)) {
+            if (ids.size() == limit) {
+                break;
+            }
+            if (wordBookIds.stream().allMatch(bookIds -> bookIds.contains(id))) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private synchronized void put(long bookId, IndexedBook book) {
+        IndexedBook previous = booksById.put(bookId, book);
+        if (previous != null) {
+            removeWords(bookId, previous);
+        }
+
+        for (BookSearchField field : BookSearchField.values()) {
+            Map<String, WordBookIds> fieldBookIdsByWord = bookIdsByWord.get(field);
+            for (String word : BookWords.words(book.text(field))) {
+                WordBookIds wordBookIds = fieldBookIdsByWord.computeIfAbsent(word, w -> new WordBookIds());
+                if (wordBookIds.bookIds.add(bookId)) {
+                    wordBookIds.size++;
+                }
+            }
+        }
+        bookIdsByUserId.computeIfAbsent(book.userId(), userId -> ConcurrentHashMap.newKeySet()).add(bookId);
+    }
+
+    private synchronized void remove(long bookId) {
+        IndexedBook previous = booksById.remove(bookId);
+        if (previous != null) {
+            removeWords(bookId, previous);
+        }
+    }
+
+    private void removeWords(long bookId, IndexedBook book) {
+        for (BookSearchField field : BookSearchField.values()) {
+            Map<String, WordBookIds> fieldBookIdsByWord = bookIdsByWord.get(field);
+            for (String word : BookWords.words(book.text(field))) {
+                fieldBookIdsByWord.computeIfPresent(word, (w, wordBookIds) -> {
+                    if (wordBookIds.bookIds.remove(bookId)) {
+                        wordBookIds.size--;
+                    }
+                    return wordBookIds.size == 0 ? null : wordBookIds;
+                });
+            }
+        }
+        bookIdsByUserId.computeIfPresent(book.userId(), (userId, bookIds) -> {
+            bookIds.remove(bookId);
+            return bookIds.isEmpty() ? null : bookIds;
+        });
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    private static String text(BookDto book, BookSearchField field) {
+        return switch (field) {
+            case AUTHOR -> book.getAuthor();
+            case TITLE -> book.getTitle();
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.edu.ulab.app.search;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalization of the book fields for the search, the same for the indexes and for the searched text.
+ */
+public final class BookWords {
+    private static final String SEPARATOR = "[^\\p{L}\\p{Nd}]+";
+
+    private BookWords() {
+    }
+
+    /**
+     * @param text value of the field or searched prefix.
+     * @return String lower case text as in the AUTHOR_KEY and TITLE_KEY columns, null if the text is null.
+     */
+    public static String key(String text) {
+        return text == null ? null : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param prefix lower case prefix.
+     * @return String pattern of LIKE with the prefix, its wildcards are escaped with backslash.
+     */
+    public static String likePattern(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    /**
+     * Splitting the text to lower case words of letters and digits.
+     * @param text value of the field or searched text, may be null.
+     * @return Set<String> distinct words in the order of the text.
+     */
+    public static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text == null) {
+            return words;
+        }
+
+        for (String word : key(text).split(SEPARATOR)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -2,17 +2,35 @@ package com.edu.ulab.app.service;
 
 
 import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UpsertResult;
+import com.edu.ulab.app.search.BookSearchField;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface BookService {
     BookDto createBook(BookDto bookDto);
 
-    BookDto updateBook(BookDto bookDto);
+    List<BookDto> createBooks(List<BookDto> bookDtos);
+
+    UpsertResult<BookDto> updateBook(BookDto bookDto);
 
     BookDto getBookById(Long id);
 
-    void deleteBookById(Long id);
+    int deleteBookById(Long id);
+
+    int deleteBooksByIds(Collection<Long> ids);
+
+    int deleteBooksByUserId(Long userId);
 
     List<Long> findAllBooksIdByUserId(Long userId);
+
+    Map<Long, List<Long>> findAllBooksIdByUserIds(Collection<Long> userIds);
+
+    List<BookDto> findAllBooksByUserId(Long userId);
+
+    List<BookDto> findBooksByPrefix(BookSearchField field, String prefix, String afterKey, long afterId, int limit);
+
+    List<BookDto> findBooksByWords(BookSearchField field, List<String> words, long afterId, int limit);
 }
@@ -0,0 +1,9 @@
+package com.edu.ulab.app.service;
+
+import com.edu.ulab.app.web.response.UserBookResponse;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+    UserBookResponse executeOnce(String requestId, Supplier<UserBookResponse> create);
+}
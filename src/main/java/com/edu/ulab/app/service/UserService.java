@@ -1,15 +1,37 @@
 package com.edu.ulab.app.service;
 
+import com.edu.ulab.app.dto.UpsertResult;
 import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.dto.UserWithBooksDto;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
 @Repository
 public interface UserService {
     UserDto createUser(UserDto userDto);
 
-    UserDto updateUser(UserDto userDto);
+    List<UserDto> createUsers(List<UserDto> userDtos);
+
+    UpsertResult<UserDto> updateUser(UserDto userDto);
 
     UserDto getUserById(Long id);
 
-    void deleteUserById(Long id);
+    UserWithBooksDto getUserWithBooksById(Long id);
+
+    List<UserDto> findUsersByIds(Collection<Long> ids);
+
+    List<UserDto> findUsersAfterId(long afterId, int limit);
+
+    Long getUserVersion(Long id);
+
+    boolean incrementUserVersion(Long id, Long expectedVersion);
+
+    int deleteUserById(Long id);
+
+    int deleteUsersByIds(Collection<Long> ids);
+
+    void forEachUserWithBooks(Consumer<UserWithBooksDto> consumer);
 }
@@ -1,27 +1,44 @@
 package com.edu.ulab.app.service.impl;
 
 import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UpsertResult;
 import com.edu.ulab.app.entity.Book;
 import com.edu.ulab.app.mapper.BookMapper;
 import com.edu.ulab.app.repository.BookRepository;
+import com.edu.ulab.app.search.BookSearchField;
+import com.edu.ulab.app.search.BookWordIndex;
+import com.edu.ulab.app.search.BookWords;
 import com.edu.ulab.app.service.BookService;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "user-book.backend", havingValue = "jpa")
+@Timed(value = "userbook.service", extraTags = {"backend", "jpa"})
 public class BookServiceImpl implements BookService {
 
     private final BookRepository bookRepository;
 
     private final BookMapper bookMapper;
 
+    private final BookWordIndex bookWordIndex;
+
     public BookServiceImpl(BookRepository bookRepository,
-                           BookMapper bookMapper) {
+                           BookMapper bookMapper,
+                           BookWordIndex bookWordIndex) {
         this.bookRepository = bookRepository;
         this.bookMapper = bookMapper;
+        this.bookWordIndex = bookWordIndex;
     }
 
     /**
@@ -32,40 +49,67 @@ public class BookServiceImpl implements BookService {
      */
     @Override
     public BookDto createBook(BookDto bookDto) {
-        log.info("Got create book by book DTO: {}", bookDto);
+        log.debug("Got create book by book DTO: {}", bookDto);
 
         Book book = bookMapper.bookDtoToBook(bookDto);
-        log.info("Mapped book DTO to book: {}", book);
+        log.debug("Mapped book DTO to book: {}", book);
 
         Book savedBook = bookRepository.save(book);
-        log.info("Created book: {}", savedBook);
+        log.debug("Created book: {}", savedBook);
 
         BookDto returnedBookDto = bookMapper.bookToBookDto(savedBook);
-        log.info("Mapped book to book DTO: {}", returnedBookDto);
+        log.debug("Mapped book to book DTO: {}", returnedBookDto);
+        bookWordIndex.indexBooks(List.of(returnedBookDto));
 
         return returnedBookDto;
     }
 
+    /**
+     * Create books by list of book dto.
+     * All books are saved to a database in one call with unique identifiers.
+     * @param bookDtos data for create books.
+     * @return List<BookDto> book dto list with IDs in the same order as bookDtos.
+     */
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtos) {
+        log.debug("Got create books by book DTO list, size: {}", bookDtos.size());
+
+        List<Book> books = bookMapper.bookDtoListToBookList(bookDtos);
+        log.debug("Mapped book DTO list to book list: {}", books);
+
+        List<Book> savedBooks = new ArrayList<>(books.size());
+        bookRepository.saveAll(books).forEach(savedBooks::add);
+        log.debug("Created books: {}", savedBooks);
+
+        List<BookDto> returnedBookDtos = bookMapper.bookListToBookDtoList(savedBooks);
+        log.debug("Mapped book list to book DTO list: {}", returnedBookDtos);
+        bookWordIndex.indexBooks(returnedBookDtos);
+
+        return returnedBookDtos;
+    }
+
     /**
      * Update book by book dto.
-     * If the updated book is not in the database, then a new one is created.
+     * If the updated book is not in the database, then a new one is created with a generated ID.
      * @param bookDto book dto for update.
-     * @return BookDto updated or created book dto.
+     * @return UpsertResult<BookDto> updated or created book dto and whether it was created.
      */
     @Override
-    public BookDto updateBook(BookDto bookDto) {
-        log.info("Got update book by book DTO: {}", bookDto);
+    public UpsertResult<BookDto> updateBook(BookDto bookDto) {
+        log.debug("Got update book by book DTO: {}", bookDto);
 
         Book book = bookMapper.bookDtoToBook(bookDto);
-        log.info("Mapped book DTO to book: {}", book);
+        log.debug("Mapped book DTO to book: {}", book);
 
         Book updatedBook = bookRepository.save(book);
-        log.info("Updated book: {}", updatedBook);
+        log.debug("Updated book: {}", updatedBook);
 
         BookDto returnedBookDto = bookMapper.bookToBookDto(updatedBook);
-        log.info("Mapped book to book DTO: {}", returnedBookDto);
+        log.debug("Mapped book to book DTO: {}", returnedBookDto);
+        bookWordIndex.indexBooks(List.of(returnedBookDto));
 
-        return returnedBookDto;
+        boolean inserted = !Objects.equals(bookDto.getId(), updatedBook.getId());
+        return new UpsertResult<>(returnedBookDto, inserted);
     }
 
     /**
@@ -75,29 +119,68 @@ public class BookServiceImpl implements BookService {
      */
     @Override
     public BookDto getBookById(Long id) {
-        log.info("Wants get book by book id: {}", id);
+        log.debug("Wants get book by book id: {}", id);
 
         Book receivedBook = bookRepository.findById(id).orElse(null);
-        log.info("Received book: {}", receivedBook);
+        log.debug("Received book: {}", receivedBook);
 
         BookDto returnedBookDto = bookMapper.bookToBookDto(receivedBook);
-        log.info("Mapped book to book DTO: {}", returnedBookDto);
+        log.debug("Mapped book to book DTO: {}", returnedBookDto);
 
         return returnedBookDto;
     }
 
     /**
-     * Deleting a book from the database by its ID.
+     * Deleting a book from the database by its ID with one query.
      * If there is no book with this ID, then nothing happens.
      * @param id book ID.
+     * @return int number of deleted books, 0 or 1.
+     */
+    @Override
+    public int deleteBookById(Long id) {
+        log.debug("Got delete book by book id: {}", id);
+
+        int deletedCount = bookRepository.deleteBookById(id);
+        bookWordIndex.removeBooks(List.of(id));
+        log.debug("Deleted {} books with id: {}", deletedCount, id);
+
+        return deletedCount;
+    }
+
+    /**
+     * Deleting books from the database by IDs with one query.
+     * Absent IDs are skipped.
+     * @param ids book IDs.
+     * @return int number of deleted books.
      */
     @Override
-    public void deleteBookById(Long id) {
-        log.info("Got delete book by book id: {}", id);
-        if (bookRepository.existsById(id)) {
-            bookRepository.deleteById(id);
-            log.info("Book was deleted with id: {}", id);
+    public int deleteBooksByIds(Collection<Long> ids) {
+        log.debug("Got delete books by book ids: {}", ids);
+        if (ids.isEmpty()) {
+            return 0;
         }
+
+        int deletedCount = bookRepository.deleteAllByIdIn(ids);
+        bookWordIndex.removeBooks(ids);
+        log.debug("Deleted {} books", deletedCount);
+
+        return deletedCount;
+    }
+
+    /**
+     * Deleting all books of the user from the database with one query.
+     * @param userId user id.
+     * @return int number of deleted books.
+     */
+    @Override
+    public int deleteBooksByUserId(Long userId) {
+        log.debug("Got delete all books by user id: {}", userId);
+
+        int deletedCount = bookRepository.deleteAllByUserId(userId);
+        bookWordIndex.removeBooksOfUsers(List.of(userId));
+        log.debug("Deleted {} books of user with id: {}", deletedCount, userId);
+
+        return deletedCount;
     }
 
     /**
@@ -107,11 +190,98 @@ public class BookServiceImpl implements BookService {
      */
     @Override
     public List<Long> findAllBooksIdByUserId(Long userId) {
-        log.info("Wants get all books by user id: {}", userId);
+        log.debug("Wants get all books by user id: {}", userId);
 
         List<Long> allBooksIdByUserId = bookRepository.findAllBooksIdByUserId(userId);
-        log.info("Received all books by user id: {}", allBooksIdByUserId);
+        log.debug("Received all books by user id: {}", allBooksIdByUserId);
 
         return allBooksIdByUserId;
     }
+
+    /**
+     * Getting a list of books that belong to a user with userId.
+     * @param userId user id.
+     * @return List<BookDto> list of user books.
+     */
+    @Override
+    public List<BookDto> findAllBooksByUserId(Long userId) {
+        log.debug("Wants get all books by user id: {}", userId);
+
+        List<Book> allBooksByUserId = bookRepository.findAllByUserId(userId);
+        log.debug("Received all books by user id: {}", allBooksByUserId);
+
+        return bookMapper.bookListToBookDtoList(allBooksByUserId);
+    }
+
+    /**
+     * Getting IDs of books of several users with one query.
+     * @param userIds user ids.
+     * @return Map<Long, List<Long>> book ids by user id, users without books are absent.
+     */
+    @Override
+    public Map<Long, List<Long>> findAllBooksIdByUserIds(Collection<Long> userIds) {
+        log.debug("Wants get all books by user ids: {}", userIds);
+
+        Map<Long, List<Long>> allBooksIdByUserIds = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            bookRepository.findAllBooksIdByUserIdIn(userIds).forEach(userBookId -> allBooksIdByUserIds
+                    .computeIfAbsent(userBookId.getUserId(), userId -> new ArrayList<>())
+                    .add(userBookId.getId()));
+        }
+
+        log.debug("Received all books by user ids: {}", allBooksIdByUserIds);
+        return allBooksIdByUserIds;
+    }
+
+    /**
+     * Getting a page of books with the field starting with the prefix, ordered by the field and ID.
+     * The native query seeks the index on the lower case field and ID from the last book of the previous page.
+     * @param field searched field.
+     * @param prefix lower case prefix.
+     * @param afterKey lower case field of the last book of the previous page, null for the first page.
+     * @param afterId ID of the last book of the previous page.
+     * @param limit maximum number of books on the page.
+     * @return List<BookDto> books of the page.
+     */
+    @Override
+    public List<BookDto> findBooksByPrefix(BookSearchField field, String prefix, String afterKey, long afterId, int limit) {
+        log.debug("Wants get books by {} prefix: {}, after key: {}, after id: {}", field, prefix, afterKey, afterId);
+
+        String fromKey = afterKey == null ? prefix : afterKey;
+        long fromId = afterKey == null ? 0 : afterId;
+        List<Book> books = switch (field) {
+            case AUTHOR -> bookRepository.findAllByAuthorPrefix(fromKey, BookWords.likePattern(prefix), fromId, limit);
+            case TITLE -> bookRepository.findAllByTitlePrefix(fromKey, BookWords.likePattern(prefix), fromId, limit);
+        };
+        log.debug("Received books by prefix: {}", books.size());
+
+        return bookMapper.bookListToBookDtoList(books);
+    }
+
+    /**
+     * Getting a page of books with all words in the field, ordered by ID.
+     * Book IDs after the last book of the previous page are taken from the in-process word index
+     * and the books are read by the primary key.
+     * @param field searched field.
+     * @param words lower case words.
+     * @param afterId ID of the last book of the previous page, 0 for the first page.
+     * @param limit maximum number of books on the page.
+     * @return List<BookDto> books of the page.
+     */
+    @Override
+    public List<BookDto> findBooksByWords(BookSearchField field, List<String> words, long afterId, int limit) {
+        log.debug("Wants get books by {} words: {}, after id: {}", field, words, afterId);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+
+        List<BookDto> books = bookWordIndex.findBooks(field, words, afterId, limit, ids -> {
+            List<Book> foundBooks = new ArrayList<>(ids.size());
+            bookRepository.findAllById(ids).forEach(foundBooks::add);
+            return bookMapper.bookListToBookDtoList(foundBooks);
+        });
+        log.debug("Received books by words: {}", books.size());
+
+        return books;
+    }
 }
@@ -0,0 +1,291 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UpsertResult;
+import com.edu.ulab.app.repository.memory.UserBookMemoryStore;
+import com.edu.ulab.app.repository.memory.UserBookMemoryStore.BookRow;
+import com.edu.ulab.app.search.BookSearchField;
+import com.edu.ulab.app.service.BookService;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "user-book.backend", havingValue = "memory")
+@Timed(value = "userbook.service", extraTags = {"backend", "memory"})
+public class BookServiceImplMemory implements BookService {
+    private final UserBookMemoryStore store;
+
+    public BookServiceImplMemory(UserBookMemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Create book by book dto.
+     * Creating a book and saving it to the memory store with a unique identifier.
+     *
+     * @param bookDto data for create book.
+     * @return BookDto book dto with ID.
+     */
+    @Override
+    public BookDto createBook(BookDto bookDto) {
+        log.debug("Got create book by book DTO: {}", bookDto);
+
+        bookDto.setId(store.nextBookId());
+        store.putBook(toBookRow(bookDto));
+        log.debug("Created book: {}", bookDto);
+
+        return bookDto;
+    }
+
+    /**
+     * Create books by list of book dto.
+     * IDs of the books of one user are added to the user book IDs at once.
+     *
+     * @param bookDtos data for create books.
+     * @return List<BookDto> book dto list with IDs in the same order as bookDtos.
+     */
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtos) {
+        log.debug("Got create books by book DTO list, size: {}", bookDtos.size());
+
+        Map<Long, List<BookRow>> booksByUserId = new LinkedHashMap<>();
+        for (BookDto bookDto : bookDtos) {
+            bookDto.setId(store.nextBookId());
+            booksByUserId.computeIfAbsent(bookDto.getUserId(), userId -> new ArrayList<>()).add(toBookRow(bookDto));
+        }
+        booksByUserId.forEach(store::putNewBooks);
+        log.debug("Created books: {}", bookDtos);
+
+        return bookDtos;
+    }
+
+    /**
+     * Update book by book dto.
+     * If the updated book is not in the store, then a new one is created with a generated ID.
+     *
+     * @param bookDto book dto for update.
+     * @return UpsertResult<BookDto> updated or created book dto and whether it was created.
+     */
+    @Override
+    public UpsertResult<BookDto> updateBook(BookDto bookDto) {
+        log.debug("Got update book by book DTO: {}", bookDto);
+
+        if (bookDto.getId() == null || store.getBook(bookDto.getId()) == null) {
+            BookDto createdBook = createBook(bookDto);
+            log.debug("No book with the required id was found. Therefore, a new book was created: {}", createdBook);
+
+            return new UpsertResult<>(createdBook, true);
+        }
+
+        store.putBook(toBookRow(bookDto));
+        log.debug("Updated book data: {}", bookDto);
+
+        return new UpsertResult<>(bookDto, false);
+    }
+
+    /**
+     * Getting a book by its ID from the memory store.
+     *
+     * @param id book ID.
+     * @return BookDto if the book is found in the store. null if the book not found in the store.
+     */
+    @Override
+    public BookDto getBookById(Long id) {
+        log.debug("Wants get book by book id: {}", id);
+
+        BookDto bookDto = toBookDto(store.getBook(id));
+        log.debug("Received book: {}", bookDto);
+
+        return bookDto;
+    }
+
+    /**
+     * Deleting a book from the memory store by its ID.
+     * If there is no book with this ID, then nothing happens.
+     *
+     * @param id book ID.
+     * @return int number of deleted books, 0 or 1.
+     */
+    @Override
+    public int deleteBookById(Long id) {
+        log.debug("Got delete book by book id: {}", id);
+
+        int deletedCount = store.removeBook(id) ? 1 : 0;
+        log.debug("Deleted {} books with id: {}", deletedCount, id);
+
+        return deletedCount;
+    }
+
+    /**
+     * Deleting books from the memory store by IDs.
+     * Absent IDs are skipped.
+     *
+     * @param ids book IDs.
+     * @return int number of deleted books.
+     */
+    @Override
+    public int deleteBooksByIds(Collection<Long> ids) {
+        log.debug("Got delete books by book ids: {}", ids);
+
+        int deletedCount = 0;
+        for (Long id : ids) {
+            if (store.removeBook(id)) {
+                deletedCount++;
+            }
+        }
+        log.debug("Deleted {} books", deletedCount);
+
+        return deletedCount;
+    }
+
+    /**
+     * Deleting all books of the user from the memory store.
+     *
+     * @param userId user id.
+     * @return int number of deleted books.
+     */
+    @Override
+    public int deleteBooksByUserId(Long userId) {
+        log.debug("Got delete all books by user id: {}", userId);
+
+        int deletedCount = store.removeBooksOfUser(userId);
+        log.debug("Deleted {} books of user with id: {}", deletedCount, userId);
+
+        return deletedCount;
+    }
+
+    /**
+     * Getting a list of IDs of books that belong to a user with userId from the user book IDs.
+     *
+     * @param userId user id.
+     * @return List<Long> list of user book ids.
+     */
+    @Override
+    public List<Long> findAllBooksIdByUserId(Long userId) {
+        log.debug("Wants get all books by user id: {}", userId);
+
+        List<Long> allBooksIdByUserId = Arrays.stream(store.getBookIds(userId)).boxed().toList();
+        log.debug("Received all books by user id: {}", allBooksIdByUserId);
+
+        return allBooksIdByUserId;
+    }
+
+    /**
+     * Getting IDs of books of several users.
+     *
+     * @param userIds user ids.
+     * @return Map<Long, List<Long>> book ids by user id, users without books are absent.
+     */
+    @Override
+    public Map<Long, List<Long>> findAllBooksIdByUserIds(Collection<Long> userIds) {
+        log.debug("Wants get all books by user ids: {}", userIds);
+
+        Map<Long, List<Long>> allBooksIdByUserIds = new HashMap<>();
+        for (Long userId : userIds) {
+            long[] bookIds = store.getBookIds(userId);
+            if (bookIds.length > 0) {
+                allBooksIdByUserIds.put(userId, Arrays.stream(bookIds).boxed().toList());
+            }
+        }
+
+        log.debug("Received all books by user ids: {}", allBooksIdByUserIds);
+        return allBooksIdByUserIds;
+    }
+
+    /**
+     * Getting a list of books that belong to a user with userId.
+     *
+     * @param userId user id.
+     * @return List<BookDto> list of user books.
+     */
+    @Override
+    public List<BookDto> findAllBooksByUserId(Long userId) {
+        log.debug("Wants get all books by user id: {}", userId);
+
+        List<BookDto> allBooksByUserId = store.getBooks(userId)
+                .stream()
+                .map(BookServiceImplMemory::toBookDto)
+                .toList();
+        log.debug("Received all books by user id: {}", allBooksByUserId);
+
+        return allBooksByUserId;
+    }
+
+    /**
+     * Getting a page of books with the field starting with the prefix from the search index of the store.
+     *
+     * @param field searched field.
+     * @param prefix lower case prefix.
+     * @param afterKey lower case field of the last book of the previous page, null for the first page.
+     * @param afterId ID of the last book of the previous page.
+     * @param limit maximum number of books on the page.
+     * @return List<BookDto> books of the page ordered by the field and ID.
+     */
+    @Override
+    public List<BookDto> findBooksByPrefix(BookSearchField field, String prefix, String afterKey, long afterId, int limit) {
+        log.debug("Wants get books by {} prefix: {}, after key: {}, after id: {}", field, prefix, afterKey, afterId);
+
+        List<BookDto> books = store.findBooksByPrefix(field, prefix, afterKey, afterId, limit)
+                .stream()
+                .map(BookServiceImplMemory::toBookDto)
+                .toList();
+        log.debug("Received books by prefix: {}", books.size());
+
+        return books;
+    }
+
+    /**
+     * Getting a page of books with all words in the field from the search index of the store.
+     *
+     * @param field searched field.
+     * @param words lower case words.
+     * @param afterId ID of the last book of the previous page, 0 for the first page.
+     * @param limit maximum number of books on the page.
+     * @return List<BookDto> books of the page ordered by ID.
+     */
+    @Override
+    public List<BookDto> findBooksByWords(BookSearchField field, List<String> words, long afterId, int limit) {
+        log.debug("Wants get books by {} words: {}, after id: {}", field, words, afterId);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+
+        List<BookDto> books = store.findBooksByWords(field, words, afterId, limit)
+                .stream()
+                .map(BookServiceImplMemory::toBookDto)
+                .toList();
+        log.debug("Received books by words: {}", books.size());
+
+        return books;
+    }
+
+    static BookDto toBookDto(BookRow book) {
+        if (book == null) {
+            return null;
+        }
+
+        return BookDto.builder()
+                .id(book.id())
+                .userId(book.userId())
+                .title(book.title())
+                .author(book.author())
+                .pageCount(book.pageCount())
+                .build();
+    }
+
+    private static BookRow toBookRow(BookDto bookDto) {
+        return new BookRow(bookDto.getId(), bookDto.getUserId(), bookDto.getTitle(), bookDto.getAuthor(),
+                bookDto.getPageCount());
+    }
+}
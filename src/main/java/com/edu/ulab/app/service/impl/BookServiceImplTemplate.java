@@ -1,98 +1,156 @@
 package com.edu.ulab.app.service.impl;
 
 import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UpsertResult;
 import com.edu.ulab.app.mapper.BookRowMapper;
+import com.edu.ulab.app.metrics.SqlMetrics;
+import com.edu.ulab.app.repository.SequenceIdAllocator;
+import com.edu.ulab.app.search.BookSearchField;
+import com.edu.ulab.app.search.BookWordIndex;
+import com.edu.ulab.app.search.BookWords;
 import com.edu.ulab.app.service.BookService;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 
 import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "user-book.backend", havingValue = "jdbc", matchIfMissing = true)
+@Timed(value = "userbook.service", extraTags = {"backend", "jdbc"})
 public class BookServiceImplTemplate implements BookService {
 
     private final JdbcTemplate jdbcTemplate;
     private final BookRowMapper bookRowMapper;
+    private final SqlMetrics sqlMetrics;
+    private final SequenceIdAllocator sequenceIdAllocator;
+    private final BookWordIndex bookWordIndex;
 
-    public BookServiceImplTemplate(JdbcTemplate jdbcTemplate, BookRowMapper bookRowMapper) {
+    public BookServiceImplTemplate(JdbcTemplate jdbcTemplate,
+                                   BookRowMapper bookRowMapper,
+                                   SqlMetrics sqlMetrics,
+                                   SequenceIdAllocator sequenceIdAllocator,
+                                   BookWordIndex bookWordIndex) {
         this.jdbcTemplate = jdbcTemplate;
         this.bookRowMapper = bookRowMapper;
+        this.sqlMetrics = sqlMetrics;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+        this.bookWordIndex = bookWordIndex;
     }
 
     /**
      * Create book by book dto.
-     * Creating a book and saving it to a database with a unique identifier.
+     * Creating a book and saving it to a database with a unique identifier from the blocks of BOOK_SEQ.
      *
      * @param bookDto data for create book.
      * @return BookDto book dto with ID.
      */
     @Override
     public BookDto createBook(BookDto bookDto) {
-        log.info("Got create book by book DTO: {}", bookDto);
-        final String INSERT_SQL = "INSERT INTO BOOK(TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?)";
+        log.debug("Got create book by book DTO: {}", bookDto);
+        final String INSERT_SQL = "INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?,?)";
 
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(
-                connection -> {
-                    PreparedStatement ps =
-                            connection.prepareStatement(INSERT_SQL, new String[]{"id"});
-                    ps.setString(1, bookDto.getTitle());
-                    ps.setString(2, bookDto.getAuthor());
-                    ps.setLong(3, bookDto.getPageCount());
-                    ps.setLong(4, bookDto.getUserId());
+        bookDto.setId(sequenceIdAllocator.nextBookId());
+        sqlMetrics.record("insert_book", () -> jdbcTemplate.update(INSERT_SQL,
+                bookDto.getId(), bookDto.getTitle(), bookDto.getAuthor(), bookDto.getPageCount(), bookDto.getUserId()));
+        bookWordIndex.indexBooks(List.of(bookDto));
+        log.debug("Created book: {}", bookDto);
 
-                    return ps;
-                },
-                keyHolder);
+        return bookDto;
+    }
 
-        bookDto.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
-        log.info("Created book: {}", bookDto);
+    /**
+     * Create books by list of book dto.
+     * IDs from the blocks of BOOK_SEQ are set to the book dto and all books are inserted with one JDBC batch.
+     *
+     * @param bookDtos data for create books.
+     * @return List<BookDto> book dto list with IDs in the same order as bookDtos.
+     */
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtos) {
+        log.debug("Got create books by book DTO list, size: {}", bookDtos.size());
+        final String INSERT_SQL = "INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?,?)";
 
-        return bookDto;
+        if (bookDtos.isEmpty()) {
+            return bookDtos;
+        }
+
+        bookDtos.forEach(bookDto -> bookDto.setId(sequenceIdAllocator.nextBookId()));
+        sqlMetrics.record("batch_insert_book", () -> jdbcTemplate.batchUpdate(INSERT_SQL, bookDtos, bookDtos.size(),
+                (ps, bookDto) -> {
+                    ps.setLong(1, bookDto.getId());
+                    ps.setString(2, bookDto.getTitle());
+                    ps.setString(3, bookDto.getAuthor());
+                    ps.setLong(4, bookDto.getPageCount());
+                    ps.setLong(5, bookDto.getUserId());
+                }));
+        bookWordIndex.indexBooks(bookDtos);
+        log.debug("Created books: {}", bookDtos);
+
+        return bookDtos;
     }
 
     /**
      * Update book by book dto.
-     * If the updated book is not in the database, then a new one is created.
+     * If the updated book is not in the database, then a new one is created with an ID from the blocks of BOOK_SEQ.
+     * The existence check and the write are done by one MERGE statement, so the ID for the insert is taken
+     * before the statement and is skipped when the book is updated.
      *
      * @param bookDto book dto for update.
-     * @return BookDto updated or created book dto.
+     * @return UpsertResult<BookDto> updated or created book dto and whether it was created.
      */
     @Override
-    public BookDto updateBook(BookDto bookDto) {
-        log.info("Got update user by book DTO: {}", bookDto);
-        final String UPDATE_SQL = "UPDATE BOOK SET TITLE = ?, AUTHOR = ?, PAGE_COUNT = ?, USER_ID = ? WHERE ID = ?";
+    public UpsertResult<BookDto> updateBook(BookDto bookDto) {
+        log.debug("Got update user by book DTO: {}", bookDto);
+        final String UPSERT_SQL = "MERGE INTO BOOK B USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), "
+                + "CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), CAST(? AS INTEGER), CAST(? AS BIGINT))) "
+                + "S(ID, NEW_ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) "
+                + "ON B.ID = S.ID "
+                + "WHEN MATCHED THEN UPDATE SET TITLE = S.TITLE, AUTHOR = S.AUTHOR, PAGE_COUNT = S.PAGE_COUNT, USER_ID = S.USER_ID "
+                + "WHEN NOT MATCHED THEN INSERT (ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) "
+                + "VALUES (S.NEW_ID, S.TITLE, S.AUTHOR, S.PAGE_COUNT, S.USER_ID)";
         final Long bookId = bookDto.getId();
+        final long newBookId = sequenceIdAllocator.nextBookId();
 
-        if (bookId != null && getBookById(bookId) != null) {
-            jdbcTemplate.update(
-                    connection -> {
-                        PreparedStatement ps =
-                                connection.prepareStatement(UPDATE_SQL);
-                        ps.setString(1, bookDto.getTitle());
-                        ps.setString(2, bookDto.getAuthor());
-                        ps.setLong(3, bookDto.getPageCount());
-                        ps.setLong(4, bookDto.getUserId());
-                        ps.setLong(5, bookDto.getId());
-
-                        return ps;
-                    });
-            log.info("Updated book with id: {}", bookId);
-            log.info("Updated book data: {}", bookDto);
-
-            return bookDto;
-        } else {
-            BookDto createdBook = createBook(bookDto);
-            log.info("No book with the required id was found. Therefore, a new book was created: {}", createdBook);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        sqlMetrics.record("upsert_book", () -> jdbcTemplate.update(
+                connection -> {
+                    PreparedStatement ps =
+                            connection.prepareStatement(UPSERT_SQL, new String[]{"id"});
+                    ps.setObject(1, bookId);
+                    ps.setLong(2, newBookId);
+                    ps.setString(3, bookDto.getTitle());
+                    ps.setString(4, bookDto.getAuthor());
+                    ps.setLong(5, bookDto.getPageCount());
+                    ps.setLong(6, bookDto.getUserId());
 
-            return createdBook;
+                    return ps;
+                },
+                keyHolder));
+
+        long savedId = Objects.requireNonNull(keyHolder.getKey()).longValue();
+        boolean inserted = savedId == newBookId;
+        bookDto.setId(savedId);
+        bookWordIndex.indexBooks(List.of(bookDto));
+        if (inserted) {
+            log.debug("No book with the required id was found. Therefore, a new book was created: {}", bookDto);
+        } else {
+            log.debug("Updated book data: {}", bookDto);
         }
+
+        return new UpsertResult<>(bookDto, inserted);
     }
 
     /**
@@ -103,17 +161,18 @@ public class BookServiceImplTemplate implements BookService {
      */
     @Override
     public BookDto getBookById(Long id) {
-        log.info("Wants get book by book id: {}", id);
+        log.debug("Wants get book by book id: {}", id);
         final String GET_SQL = "SELECT * FROM BOOK WHERE ID = ?";
 
         BookDto bookDto = null;
-        List<BookDto> books = jdbcTemplate.query(GET_SQL, ps -> ps.setLong(1, id), bookRowMapper);
+        List<BookDto> books = sqlMetrics.record("select_book_by_id",
+                () -> jdbcTemplate.query(GET_SQL, ps -> ps.setLong(1, id), bookRowMapper));
 
         if (!books.isEmpty()) {
             bookDto = books.get(0);
         }
 
-        log.info("Received book: {}", bookDto);
+        log.debug("Received book: {}", bookDto);
 
         return bookDto;
     }
@@ -123,20 +182,67 @@ public class BookServiceImplTemplate implements BookService {
      * If there is no book with this ID, then nothing happens.
      *
      * @param id book ID.
+     * @return int number of deleted books, 0 or 1.
      */
     @Override
-    public void deleteBookById(Long id) {
-        log.info("Got delete book by book id: {}", id);
+    public int deleteBookById(Long id) {
+        log.debug("Got delete book by book id: {}", id);
         final String DELETE_SQL = "DELETE FROM BOOK WHERE ID = ?";
 
-        jdbcTemplate.update(connection -> {
+        int deletedCount = sqlMetrics.record("delete_book_by_id", () -> jdbcTemplate.update(connection -> {
             PreparedStatement ps = connection.prepareStatement(DELETE_SQL);
             ps.setLong(1, id);
 
             return ps;
-        });
+        }));
+        bookWordIndex.removeBooks(List.of(id));
+
+        log.debug("Deleted {} books with id: {}", deletedCount, id);
+        return deletedCount;
+    }
+
+    /**
+     * Deleting books from the database by IDs with one query.
+     * Absent IDs are skipped.
+     *
+     * @param ids book IDs.
+     * @return int number of deleted books.
+     */
+    @Override
+    public int deleteBooksByIds(Collection<Long> ids) {
+        log.debug("Got delete books by book ids: {}", ids);
+        final String DELETE_BY_IDS_SQL = "DELETE FROM BOOK WHERE ID IN ("
+                + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        int deletedCount = sqlMetrics.record("delete_book_by_ids",
+                () -> jdbcTemplate.update(DELETE_BY_IDS_SQL, ids.toArray()));
+        bookWordIndex.removeBooks(ids);
+
+        log.debug("Deleted {} books", deletedCount);
+        return deletedCount;
+    }
+
+    /**
+     * Deleting all books of the user from the database with one query.
+     *
+     * @param userId user id.
+     * @return int number of deleted books.
+     */
+    @Override
+    public int deleteBooksByUserId(Long userId) {
+        log.debug("Got delete all books by user id: {}", userId);
+        final String DELETE_BY_USER_ID_SQL = "DELETE FROM BOOK WHERE USER_ID = ?";
+
+        int deletedCount = sqlMetrics.record("delete_book_by_user_id",
+                () -> jdbcTemplate.update(DELETE_BY_USER_ID_SQL, ps -> ps.setLong(1, userId)));
+        bookWordIndex.removeBooksOfUsers(List.of(userId));
 
-        log.info("Book was deleted with id: {}", id);
+        log.debug("Deleted {} books of user with id: {}", deletedCount, userId);
+        return deletedCount;
     }
 
     /**
@@ -148,14 +254,134 @@ public class BookServiceImplTemplate implements BookService {
      */
     @Override
     public List<Long> findAllBooksIdByUserId(Long userId) {
-        log.info("Wants get all books by user id: {}", userId);
+        log.debug("Wants get all books by user id: {}", userId);
         final String GET_ALL_BOOKS_ID_BY_USER_ID_SQL = "SELECT ID FROM BOOK WHERE USER_ID = ?";
 
-        List<Long> allBooksIdByUserId = jdbcTemplate.query(GET_ALL_BOOKS_ID_BY_USER_ID_SQL,
-                ps -> ps.setLong(1, userId),
-                (rs , rowNum) -> rs.getLong("ID"));
+        List<Long> allBooksIdByUserId = sqlMetrics.record("select_book_id_by_user_id",
+                () -> jdbcTemplate.query(GET_ALL_BOOKS_ID_BY_USER_ID_SQL,
+                        ps -> ps.setLong(1, userId),
+                        (rs , rowNum) -> rs.getLong("ID")));
 
-        log.info("Received all books by user id: {}", allBooksIdByUserId);
+        log.debug("Received all books by user id: {}", allBooksIdByUserId);
         return allBooksIdByUserId;
     }
+
+    /**
+     * Getting a list of books that belong to a user with userId.
+     * SQL query gets all book rows by userId.
+     *
+     * @param userId user id.
+     * @return List<BookDto> list of user books.
+     */
+    @Override
+    public List<BookDto> findAllBooksByUserId(Long userId) {
+        log.debug("Wants get all books by user id: {}", userId);
+        final String GET_ALL_BOOKS_BY_USER_ID_SQL = "SELECT * FROM BOOK WHERE USER_ID = ?";
+
+        List<BookDto> allBooksByUserId = sqlMetrics.record("select_book_by_user_id",
+                () -> jdbcTemplate.query(GET_ALL_BOOKS_BY_USER_ID_SQL,
+                        ps -> ps.setLong(1, userId),
+                        bookRowMapper));
+
+        log.debug("Received all books by user id: {}", allBooksByUserId);
+        return allBooksByUserId;
+    }
+
+    /**
+     * Getting IDs of books of several users with one query.
+     * SQL query gets book IDs of all users by the USER_ID index.
+     *
+     * @param userIds user ids.
+     * @return Map<Long, List<Long>> book ids by user id, users without books are absent.
+     */
+    @Override
+    public Map<Long, List<Long>> findAllBooksIdByUserIds(Collection<Long> userIds) {
+        log.debug("Wants get all books by user ids: {}", userIds);
+        final String GET_ALL_BOOKS_ID_BY_USER_IDS_SQL = "SELECT USER_ID, ID FROM BOOK WHERE USER_ID IN ("
+                + String.join(",", Collections.nCopies(userIds.size(), "?")) + ") ORDER BY ID";
+
+        Map<Long, List<Long>> allBooksIdByUserIds = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            sqlMetrics.record("select_book_id_by_user_ids", () -> {
+                jdbcTemplate.query(GET_ALL_BOOKS_ID_BY_USER_IDS_SQL,
+                        rs -> {
+                            allBooksIdByUserIds.computeIfAbsent(rs.getLong("USER_ID"), userId -> new ArrayList<>())
+                                    .add(rs.getLong("ID"));
+                        },
+                        userIds.toArray());
+
+                return null;
+            });
+        }
+
+        log.debug("Received all books by user ids: {}", allBooksIdByUserIds);
+        return allBooksIdByUserIds;
+    }
+
+    /**
+     * Getting a page of books with the field starting with the prefix, ordered by the field and ID.
+     * SQL query seeks the index on the lower case field and ID from the last book of the previous page,
+     * so the time of a page doesn't depend on the number of matching books and of the previous pages.
+     *
+     * @param field searched field.
+     * @param prefix lower case prefix.
+     * @param afterKey lower case field of the last book of the previous page, null for the first page.
+     * @param afterId ID of the last book of the previous page.
+     * @param limit maximum number of books on the page.
+     * @return List<BookDto> books of the page.
+     */
+    @Override
+    public List<BookDto> findBooksByPrefix(BookSearchField field, String prefix, String afterKey, long afterId, int limit) {
+        log.debug("Wants get books by {} prefix: {}, after key: {}, after id: {}", field, prefix, afterKey, afterId);
+        String key = field.getKeyColumn();
+        final String GET_BOOKS_BY_PREFIX_SQL = "SELECT * FROM BOOK WHERE " + key + " >= ? AND " + key + " LIKE ? ESCAPE '\\'"
+                + " AND (" + key + " > ? OR ID > ?) ORDER BY " + key + ", ID LIMIT ?";
+
+        String fromKey = afterKey == null ? prefix : afterKey;
+        List<BookDto> books = sqlMetrics.record("select_book_by_prefix",
+                () -> jdbcTemplate.query(GET_BOOKS_BY_PREFIX_SQL,
+                        ps -> {
+                            ps.setString(1, fromKey);
+                            ps.setString(2, BookWords.likePattern(prefix));
+                            ps.setString(3, fromKey);
+                            ps.setLong(4, afterKey == null ? 0 : afterId);
+                            ps.setInt(5, limit);
+                        },
+                        bookRowMapper));
+
+        log.debug("Received books by prefix: {}", books.size());
+        return books;
+    }
+
+    /**
+     * Getting a page of books with all words in the field, ordered by ID.
+     * Book IDs after the last book of the previous page are taken from the in-process word index
+     * and the books are read by the primary key with one query per page of IDs.
+     *
+     * @param field searched field.
+     * @param words lower case words.
+     * @param afterId ID of the last book of the previous page, 0 for the first page.
+     * @param limit maximum number of books on the page.
+     * @return List<BookDto> books of the page.
+     */
+    @Override
+    public List<BookDto> findBooksByWords(BookSearchField field, List<String> words, long afterId, int limit) {
+        log.debug("Wants get books by {} words: {}, after id: {}", field, words, afterId);
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<BookDto> books = bookWordIndex.findBooks(field, words, afterId, limit, this::findBooksByIds);
+
+        log.debug("Received books by words: {}", books.size());
+        return books;
+    }
+
+    private List<BookDto> findBooksByIds(List<Long> ids) {
+        final String GET_BOOKS_BY_IDS_SQL = "SELECT * FROM BOOK WHERE ID IN ("
+                + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+
+        return sqlMetrics.record("select_book_by_ids",
+                () -> jdbcTemplate.query(GET_BOOKS_BY_IDS_SQL, bookRowMapper, ids.toArray()));
+    }
 }
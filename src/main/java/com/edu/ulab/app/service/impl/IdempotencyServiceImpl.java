@@ -0,0 +1,91 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.config.UserBookIdempotencyProperties;
+import com.edu.ulab.app.constant.ErrorMessageTextConstants;
+import com.edu.ulab.app.exception.RequestInProgressException;
+import com.edu.ulab.app.service.IdempotencyService;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "user-book.idempotency.mode", havingValue = "memory", matchIfMissing = true)
+public class IdempotencyServiceImpl implements IdempotencyService {
+    private final Cache<String, CompletableFuture<UserBookResponse>> responses;
+    private final long repeatTimeoutNanos;
+    private final Counter repeatedCounter;
+
+    public IdempotencyServiceImpl(UserBookIdempotencyProperties properties, MeterRegistry meterRegistry) {
+        this.repeatTimeoutNanos = properties.getRepeatTimeout().toNanos();
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+        this.repeatedCounter = Counter.builder("userbook.idempotency.repeated")
+                .description("Repeated creates answered with the response of the first request")
+                .tag("mode", "memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Executing the create once for the request ID.
+     * The response is kept in the bounded memory map with TTL. A repeated request gets the stored response,
+     * a concurrent repeated request waits for the response of the first one up to the repeat timeout,
+     * so a hanging first request doesn't hold the threads of all its retries.
+     * If the create fails, the request ID is removed, so the next retry executes the create again.
+     *
+     * @param requestId request ID from the rqid header, the create is executed every time if it is empty.
+     * @param create create of the user with books.
+     * @return UserBookResponse response of the first request with this ID.
+     * @throws RequestInProgressException if the first request with this ID isn't completed in the repeat timeout.
+     */
+    @Override
+    public UserBookResponse executeOnce(String requestId, Supplier<UserBookResponse> create) {
+        if (requestId == null || requestId.isEmpty()) {
+            return create.get();
+        }
+
+        CompletableFuture<UserBookResponse> response = new CompletableFuture<>();
+        CompletableFuture<UserBookResponse> storedResponse = responses.asMap().putIfAbsent(requestId, response);
+        if (storedResponse != null) {
+            log.info("Repeated request with id: {}", requestId);
+            repeatedCounter.increment();
+            try {
+                return storedResponse.get(repeatTimeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new RequestInProgressException(ErrorMessageTextConstants.REQUEST_IN_PROGRESS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RequestInProgressException(ErrorMessageTextConstants.REQUEST_IN_PROGRESS);
+            }
+        }
+
+        try {
+            UserBookResponse createdResponse = create.get();
+            response.complete(createdResponse);
+
+            return createdResponse;
+        } catch (RuntimeException e) {
+            responses.asMap().remove(requestId, response);
+            response.completeExceptionally(e);
+            throw e;
+        }
+    }
+}
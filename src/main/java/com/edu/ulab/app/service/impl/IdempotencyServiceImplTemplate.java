@@ -0,0 +1,144 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.admission.Admission;
+import com.edu.ulab.app.admission.AdmissionKind;
+import com.edu.ulab.app.config.UserBookIdempotencyProperties;
+import com.edu.ulab.app.constant.ErrorMessageTextConstants;
+import com.edu.ulab.app.exception.RequestInProgressException;
+import com.edu.ulab.app.metrics.SqlMetrics;
+import com.edu.ulab.app.service.IdempotencyService;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "user-book.idempotency.mode", havingValue = "table")
+public class IdempotencyServiceImplTemplate implements IdempotencyService {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SqlMetrics sqlMetrics;
+    private final Duration ttl;
+    private final Counter repeatedCounter;
+
+    public IdempotencyServiceImplTemplate(JdbcTemplate jdbcTemplate,
+                                          PlatformTransactionManager transactionManager,
+                                          SqlMetrics sqlMetrics,
+                                          UserBookIdempotencyProperties properties,
+                                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sqlMetrics = sqlMetrics;
+        this.ttl = properties.getTtl();
+        this.repeatedCounter = Counter.builder("userbook.idempotency.repeated")
+                .description("Repeated creates answered with the response of the first request")
+                .tag("mode", "table")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Executing the create once for the request ID.
+     * The request ID is inserted into IDEMPOTENCY_KEY in the transaction of the create and the response is saved
+     * before commit. A concurrent repeated request waits on the primary key lock of the first one:
+     * after commit it gets the duplicate key and reads the stored response, after rollback it executes the create,
+     * and if the first one isn't completed in the lock timeout of the database, it is rejected.
+     * The write admission is checked before the insert, so a rejected create neither takes a connection nor locks the key.
+     *
+     * @param requestId request ID from the rqid header, the create is executed every time if it is empty.
+     * @param create create of the user with books.
+     * @return UserBookResponse response of the first request with this ID.
+     * @throws RequestInProgressException if the key of the first request with this ID is locked longer than the lock timeout.
+     */
+    @Override
+    @Admission(AdmissionKind.WRITE)
+    public UserBookResponse executeOnce(String requestId, Supplier<UserBookResponse> create) {
+        final String INSERT_SQL = "INSERT INTO IDEMPOTENCY_KEY(RQID, CREATED_AT) VALUES (?,?)";
+        final String UPDATE_SQL = "UPDATE IDEMPOTENCY_KEY SET USER_ID = ?, BOOKS_ID = ?, VERSION = ? WHERE RQID = ?";
+
+        if (requestId == null || requestId.isEmpty()) {
+            return create.get();
+        }
+
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    sqlMetrics.record("insert_idempotency_key",
+                            () -> jdbcTemplate.update(INSERT_SQL, requestId, Timestamp.from(Instant.now())));
+                } catch (CannotAcquireLockException e) {
+                    log.warn("Key of the repeated request with id {} is still locked: {}", requestId, e.getMessage());
+                    throw new RequestInProgressException(ErrorMessageTextConstants.REQUEST_IN_PROGRESS);
+                }
+
+                UserBookResponse response = create.get();
+                String booksId = response.getBooksIdList().stream()
+                        .map(String::valueOf)
+                        .collect(Collectors.joining(","));
+                sqlMetrics.record("update_idempotency_key",
+                        () -> jdbcTemplate.update(UPDATE_SQL, response.getUserId(), booksId, response.getVersion(), requestId));
+
+                return response;
+            });
+        } catch (DuplicateKeyException e) {
+            log.info("Repeated request with id: {}", requestId);
+            repeatedCounter.increment();
+
+            return getStoredResponse(requestId);
+        }
+    }
+
+    /**
+     * Getting the response of the committed request.
+     * @param requestId request ID.
+     * @return UserBookResponse stored response.
+     */
+    private UserBookResponse getStoredResponse(String requestId) {
+        final String GET_SQL = "SELECT USER_ID, BOOKS_ID, VERSION FROM IDEMPOTENCY_KEY WHERE RQID = ?";
+
+        return sqlMetrics.record("select_idempotency_key", () -> jdbcTemplate.queryForObject(GET_SQL,
+                (rs, rowNum) -> UserBookResponse.builder()
+                        .userId(rs.getLong("USER_ID"))
+                        .booksIdList(parseBooksId(rs.getString("BOOKS_ID")))
+                        .version(rs.getObject("VERSION", Long.class))
+                        .build(),
+                requestId));
+    }
+
+    private static List<Long> parseBooksId(String booksId) {
+        if (booksId == null || booksId.isEmpty()) {
+            return List.of();
+        }
+
+        return Arrays.stream(booksId.split(","))
+                .map(Long::valueOf)
+                .toList();
+    }
+
+    /**
+     * Deleting the request IDs older than TTL, the next requests with these IDs are handled as new ones.
+     */
+    @Scheduled(fixedDelayString = "${user-book.idempotency.cleanup-interval}")
+    public void deleteExpiredKeys() {
+        final String DELETE_SQL = "DELETE FROM IDEMPOTENCY_KEY WHERE CREATED_AT < ?";
+
+        int deletedCount = sqlMetrics.record("delete_expired_idempotency_key",
+                () -> jdbcTemplate.update(DELETE_SQL, Timestamp.from(Instant.now().minus(ttl))));
+        log.debug("Deleted expired idempotency keys: {}", deletedCount);
+    }
+}
@@ -1,24 +1,45 @@
 package com.edu.ulab.app.service.impl;
 
+import com.edu.ulab.app.dto.UpsertResult;
+import com.edu.ulab.app.dto.UserBookRowDto;
 import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.dto.UserWithBooksDto;
 import com.edu.ulab.app.entity.Person;
 import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.mapper.UserWithBooksRowMapper;
 import com.edu.ulab.app.repository.UserRepository;
+import com.edu.ulab.app.search.BookWordIndex;
 import com.edu.ulab.app.service.UserService;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "user-book.backend", havingValue = "jpa")
+@Timed(value = "userbook.service", extraTags = {"backend", "jpa"})
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
+    private final BookWordIndex bookWordIndex;
 
     public UserServiceImpl(UserRepository userRepository,
-                           UserMapper userMapper) {
+                           UserMapper userMapper,
+                           BookWordIndex bookWordIndex) {
         this.userRepository = userRepository;
         this.userMapper = userMapper;
+        this.bookWordIndex = bookWordIndex;
     }
 
     /**
@@ -29,40 +50,64 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public UserDto createUser(UserDto userDto) {
-        log.info("Got create user by user DTO: {}", userDto);
+        log.debug("Got create user by user DTO: {}", userDto);
 
         Person user = userMapper.userDtoToPerson(userDto);
-        log.info("Mapped user DTO to person: {}", user);
+        log.debug("Mapped user DTO to person: {}", user);
 
         Person savedUser = userRepository.save(user);
-        log.info("Saved user: {}", savedUser);
+        log.debug("Saved user: {}", savedUser);
 
         UserDto returnedUserDto = userMapper.personToUserDto(savedUser);
-        log.info("Mapped person to user DTO: {}", returnedUserDto);
+        log.debug("Mapped person to user DTO: {}", returnedUserDto);
 
         return returnedUserDto;
     }
 
+    /**
+     * Create users by list of user dto.
+     * All users are saved to a database in one call with unique identifiers.
+     * @param userDtos data for create users.
+     * @return List<UserDto> user dto list with IDs in the same order as userDtos.
+     */
+    @Override
+    public List<UserDto> createUsers(List<UserDto> userDtos) {
+        log.debug("Got create users by user DTO list, size: {}", userDtos.size());
+
+        List<Person> users = userMapper.userDtoListToPersonList(userDtos);
+        log.debug("Mapped user DTO list to person list: {}", users);
+
+        List<Person> savedUsers = new ArrayList<>(users.size());
+        userRepository.saveAll(users).forEach(savedUsers::add);
+        log.debug("Saved users: {}", savedUsers);
+
+        List<UserDto> returnedUserDtos = userMapper.personListToUserDtoList(savedUsers);
+        log.debug("Mapped person list to user DTO list: {}", returnedUserDtos);
+
+        return returnedUserDtos;
+    }
+
     /**
      * Update user by user dto.
-     * If the updated user is not in the database, then a new one is created.
+     * If the updated user is not in the database, then a new one is created with a generated ID.
      * @param userDto user dto for update.
-     * @return UserDto updated or created user dto.
+     * @return UpsertResult<UserDto> updated or created user dto and whether it was created.
      */
     @Override
-    public UserDto updateUser(UserDto userDto) {
-        log.info("Got update user by user DTO: {}", userDto);
+    public UpsertResult<UserDto> updateUser(UserDto userDto) {
+        log.debug("Got update user by user DTO: {}", userDto);
 
         Person user = userMapper.userDtoToPerson(userDto);
-        log.info("Mapped DTO to person: {}", user);
+        log.debug("Mapped DTO to person: {}", user);
 
         Person updatedUser = userRepository.save(user);
-        log.info("Updated user: {}", updatedUser);
+        log.debug("Updated user: {}", updatedUser);
 
         UserDto returnedUserDto = userMapper.personToUserDto(updatedUser);
-        log.info("Mapped person to user DTO: {}", returnedUserDto);
+        log.debug("Mapped person to user DTO: {}", returnedUserDto);
 
-        return returnedUserDto;
+        boolean inserted = !Objects.equals(userDto.getId(), updatedUser.getId());
+        return new UpsertResult<>(returnedUserDto, inserted);
     }
 
     /**
@@ -72,28 +117,150 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public UserDto getUserById(Long id) {
-        log.info("Wants get user by user id: {}", id);
+        log.debug("Wants get user by user id: {}", id);
 
         Person receivedUser = userRepository.findById(id).orElse(null);
-        log.info("Received user: {}", receivedUser);
+        log.debug("Received user: {}", receivedUser);
 
         UserDto returnedUserDto = userMapper.personToUserDto(receivedUser);
-        log.info("Mapped person to user DTO: {}", returnedUserDto);
+        log.debug("Mapped person to user DTO: {}", returnedUserDto);
 
         return returnedUserDto;
     }
 
     /**
-     * Deleting a user from the database by its ID.
+     * Getting a user with all his books by user ID with one join query.
+     * @param id user ID.
+     * @return UserWithBooksDto user with books ordered by ID, null if the user not found in the database.
+     */
+    @Override
+    public UserWithBooksDto getUserWithBooksById(Long id) {
+        log.debug("Wants get user with books by user id: {}", id);
+
+        UserWithBooksDto[] userWithBooks = {null};
+        UserWithBooksRowMapper.groupRows(userRepository.findUserWithBooksById(id), user -> userWithBooks[0] = user);
+        log.debug("Received user with books: {}", userWithBooks[0]);
+
+        return userWithBooks[0];
+    }
+
+    /**
+     * Getting users by IDs with one query.
+     * @param ids user IDs.
+     * @return List<UserDto> found users, absent IDs are skipped.
+     */
+    @Override
+    public List<UserDto> findUsersByIds(Collection<Long> ids) {
+        log.debug("Wants get users by user ids: {}", ids);
+
+        List<Person> receivedUsers = new ArrayList<>(ids.size());
+        userRepository.findAllById(ids).forEach(receivedUsers::add);
+        log.debug("Received users: {}", receivedUsers);
+
+        return userMapper.personListToUserDtoList(receivedUsers);
+    }
+
+    /**
+     * Getting a page of users ordered by ID with IDs greater than afterId.
+     * @param afterId ID of the last user of the previous page, 0 for the first page.
+     * @param limit maximum number of users on the page.
+     * @return List<UserDto> users of the page.
+     */
+    @Override
+    public List<UserDto> findUsersAfterId(long afterId, int limit) {
+        log.debug("Wants get {} users after user id: {}", limit, afterId);
+
+        List<Person> receivedUsers = userRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+        log.debug("Received users: {}", receivedUsers);
+
+        return userMapper.personListToUserDtoList(receivedUsers);
+    }
+
+    /**
+     * Getting a version of the user by its ID without reading the user.
+     * @param id user ID.
+     * @return Long version of the user, null if the user not found in the database.
+     */
+    @Override
+    public Long getUserVersion(Long id) {
+        log.debug("Wants get version of user with id: {}", id);
+
+        Long version = userRepository.findVersionById(id).orElse(null);
+        log.debug("Received version of user: {}", version);
+
+        return version;
+    }
+
+    /**
+     * Incrementing the version of the user after a change of the user or his books.
+     * @param id user ID.
+     * @param expectedVersion current version of the user known to the client, null to increment any version.
+     * @return boolean whether the version was incremented, false if no user or the version is other than expected.
+     */
+    @Override
+    public boolean incrementUserVersion(Long id, Long expectedVersion) {
+        log.debug("Wants increment version of user with id: {}, expected version: {}", id, expectedVersion);
+
+        int updatedCount = expectedVersion == null
+                ? userRepository.incrementVersion(id)
+                : userRepository.incrementVersion(id, expectedVersion);
+        log.debug("Incremented versions of users: {}", updatedCount);
+
+        return updatedCount > 0;
+    }
+
+    /**
+     * Deleting a user from the database by its ID with one query, his books are deleted by the database cascade.
      * If there is no user with this ID, then nothing happens.
      * @param id user ID.
+     * @return int number of deleted users, 0 or 1.
      */
     @Override
-    public void deleteUserById(Long id) {
-        log.info("Got delete user by user id: {}", id);
-        if (userRepository.existsById(id)) {
-            userRepository.deleteById(id);
-            log.info("User was deleted with id: {}", id);
+    public int deleteUserById(Long id) {
+        log.debug("Got delete user by user id: {}", id);
+
+        int deletedCount = userRepository.deletePersonById(id);
+        bookWordIndex.removeBooksOfUsers(List.of(id));
+        log.debug("Deleted {} users with id: {}", deletedCount, id);
+
+        return deletedCount;
+    }
+
+    /**
+     * Deleting users from the database by IDs with one query, their books are deleted by the database cascade.
+     * Absent IDs are skipped.
+     * @param ids user IDs.
+     * @return int number of deleted users.
+     */
+    @Override
+    public int deleteUsersByIds(Collection<Long> ids) {
+        log.debug("Got delete users by user ids: {}", ids);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        int deletedCount = userRepository.deleteAllByIdIn(ids);
+        bookWordIndex.removeBooksOfUsers(ids);
+        log.debug("Deleted {} users", deletedCount);
+
+        return deletedCount;
+    }
+
+    /**
+     * Passing all users with their books to the consumer one by one.
+     * Users and books are read with one join query as a stream of rows ordered by user ID,
+     * so only the books of the current user are held in memory. Must be called in a transaction.
+     * @param consumer consumer of users with books.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachUserWithBooks(Consumer<UserWithBooksDto> consumer) {
+        log.debug("Wants get all users with books");
+
+        try (Stream<UserBookRowDto> rows = userRepository.streamAllUsersWithBooks()) {
+            UserWithBooksRowMapper.groupRows(rows::iterator, consumer);
         }
+
+        log.debug("Received all users with books");
     }
 }
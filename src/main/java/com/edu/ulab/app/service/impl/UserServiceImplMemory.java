@@ -0,0 +1,300 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UpsertResult;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.dto.UserWithBooksDto;
+import com.edu.ulab.app.repository.memory.UserBookMemoryStore;
+import com.edu.ulab.app.repository.memory.UserBookMemoryStore.UserRow;
+import com.edu.ulab.app.service.UserService;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "user-book.backend", havingValue = "memory")
+@Timed(value = "userbook.service", extraTags = {"backend", "memory"})
+public class UserServiceImplMemory implements UserService {
+    private final UserBookMemoryStore store;
+
+    public UserServiceImplMemory(UserBookMemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Create user by user dto.
+     * Creating a user and saving it to the memory store with a unique identifier.
+     *
+     * @param userDto data for create user.
+     * @return UserDto user dto with ID.
+     */
+    @Override
+    public UserDto createUser(UserDto userDto) {
+        log.debug("Got create user by user DTO: {}", userDto);
+
+        long id = store.nextUserId();
+        store.computeUser(id, absentUser -> toUserRow(id, userDto, 0));
+        userDto.setId(id);
+        userDto.setVersion(0);
+        log.debug("Created user: {}", userDto);
+
+        return userDto;
+    }
+
+    /**
+     * Create users by list of user dto.
+     *
+     * @param userDtos data for create users.
+     * @return List<UserDto> user dto list with IDs in the same order as userDtos.
+     */
+    @Override
+    public List<UserDto> createUsers(List<UserDto> userDtos) {
+        log.debug("Got create users by user DTO list, size: {}", userDtos.size());
+
+        userDtos.forEach(this::createUser);
+
+        return userDtos;
+    }
+
+    /**
+     * Update user by user dto.
+     * If the updated user is not in the store, then a new one is created with a generated ID.
+     *
+     * @param userDto user dto for update.
+     * @return UpsertResult<UserDto> updated or created user dto and whether it was created.
+     */
+    @Override
+    public UpsertResult<UserDto> updateUser(UserDto userDto) {
+        log.debug("Got update user by user DTO: {}", userDto);
+        final Long userId = userDto.getId();
+
+        UserRow updatedUser = userId == null ? null : store.computeUser(userId, user -> user == null
+                ? null
+                : toUserRow(userId, userDto, user.version()));
+        if (updatedUser == null) {
+            UserDto createdUser = createUser(userDto);
+            log.debug("No user with the required id was found. Therefore, a new user was created: {}", createdUser);
+
+            return new UpsertResult<>(createdUser, true);
+        }
+
+        userDto.setVersion(updatedUser.version());
+        log.debug("Updated user data: {}", userDto);
+
+        return new UpsertResult<>(userDto, false);
+    }
+
+    /**
+     * Getting a user by its ID from the memory store.
+     *
+     * @param id user ID.
+     * @return UserDto if the user is found in the store. null if the user not found in the store.
+     */
+    @Override
+    public UserDto getUserById(Long id) {
+        log.debug("Wants get user by user id: {}", id);
+
+        UserDto userDto = toUserDto(store.getUser(id));
+        log.debug("Received user: {}", userDto);
+
+        return userDto;
+    }
+
+    /**
+     * Getting a user with all his books by user ID from the memory store.
+     *
+     * @param id user ID.
+     * @return UserWithBooksDto user with books ordered by ID, null if the user not found in the store.
+     */
+    @Override
+    public UserWithBooksDto getUserWithBooksById(Long id) {
+        log.debug("Wants get user with books by user id: {}", id);
+
+        UserRow user = store.getUser(id);
+        UserWithBooksDto userWithBooks = user == null ? null : toUserWithBooksDto(user);
+        log.debug("Received user with books: {}", userWithBooks);
+
+        return userWithBooks;
+    }
+
+    /**
+     * Getting users by IDs from the memory store.
+     *
+     * @param ids user IDs.
+     * @return List<UserDto> found users in the order of ids, absent IDs are skipped.
+     */
+    @Override
+    public List<UserDto> findUsersByIds(Collection<Long> ids) {
+        log.debug("Wants get users by user ids: {}", ids);
+
+        List<UserDto> users = ids.stream()
+                .map(store::getUser)
+                .filter(Objects::nonNull)
+                .map(UserServiceImplMemory::toUserDto)
+                .toList();
+
+        log.debug("Received users: {}", users);
+        return users;
+    }
+
+    /**
+     * Getting a page of users ordered by ID with IDs greater than afterId.
+     *
+     * @param afterId ID of the last user of the previous page, 0 for the first page.
+     * @param limit maximum number of users on the page.
+     * @return List<UserDto> users of the page.
+     */
+    @Override
+    public List<UserDto> findUsersAfterId(long afterId, int limit) {
+        log.debug("Wants get {} users after user id: {}", limit, afterId);
+
+        List<UserDto> users = store.findUsersAfterId(afterId, limit)
+                .stream()
+                .map(UserServiceImplMemory::toUserDto)
+                .toList();
+
+        log.debug("Received users: {}", users);
+        return users;
+    }
+
+    /**
+     * Getting a version of the user by its ID.
+     *
+     * @param id user ID.
+     * @return Long version of the user, null if the user not found in the store.
+     */
+    @Override
+    public Long getUserVersion(Long id) {
+        log.debug("Wants get version of user with id: {}", id);
+
+        UserRow user = store.getUser(id);
+        Long version = user == null ? null : user.version();
+        log.debug("Received version of user: {}", version);
+
+        return version;
+    }
+
+    /**
+     * Incrementing the version of the user after a change of the user or his books.
+     * The version is compared and incremented under the lock of the user stripe.
+     *
+     * @param id user ID.
+     * @param expectedVersion current version of the user known to the client, null to increment any version.
+     * @return boolean whether the version was incremented, false if no user or the version is other than expected.
+     */
+    @Override
+    public boolean incrementUserVersion(Long id, Long expectedVersion) {
+        log.debug("Wants increment version of user with id: {}, expected version: {}", id, expectedVersion);
+
+        boolean[] incremented = {false};
+        store.computeUser(id, user -> {
+            if (user == null || (expectedVersion != null && user.version() != expectedVersion)) {
+                return user;
+            }
+            incremented[0] = true;
+            return new UserRow(user.id(), user.fullName(), user.title(), user.age(), user.version() + 1);
+        });
+        log.debug("Incremented version of user: {}", incremented[0]);
+
+        return incremented[0];
+    }
+
+    /**
+     * Deleting a user and his books from the memory store by its ID.
+     * If there is no user with this ID, then nothing happens.
+     *
+     * @param id user ID.
+     * @return int number of deleted users, 0 or 1.
+     */
+    @Override
+    public int deleteUserById(Long id) {
+        log.debug("Got delete user by user id: {}", id);
+
+        int deletedCount = store.removeUser(id) ? 1 : 0;
+        log.debug("Deleted {} users with id: {}", deletedCount, id);
+
+        return deletedCount;
+    }
+
+    /**
+     * Deleting users and their books from the memory store by IDs.
+     * Absent IDs are skipped. Users are locked in the order of ID, so concurrent deletes don't wait for each other in a cycle.
+     *
+     * @param ids user IDs.
+     * @return int number of deleted users.
+     */
+    @Override
+    public int deleteUsersByIds(Collection<Long> ids) {
+        log.debug("Got delete users by user ids: {}", ids);
+
+        int deletedCount = 0;
+        for (long id : ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray()) {
+            if (store.removeUser(id)) {
+                deletedCount++;
+            }
+        }
+        log.debug("Deleted {} users", deletedCount);
+
+        return deletedCount;
+    }
+
+    /**
+     * Passing all users with their books to the consumer one by one in the order of user ID.
+     *
+     * @param consumer consumer of users with books.
+     */
+    @Override
+    public void forEachUserWithBooks(Consumer<UserWithBooksDto> consumer) {
+        log.debug("Wants get all users with books");
+
+        for (long userId : store.getAllUserIds()) {
+            UserRow user = store.getUser(userId);
+            if (user != null) {
+                consumer.accept(toUserWithBooksDto(user));
+            }
+        }
+
+        log.debug("Received all users with books");
+    }
+
+    private UserWithBooksDto toUserWithBooksDto(UserRow user) {
+        List<BookDto> books = store.getBooks(user.id())
+                .stream()
+                .map(BookServiceImplMemory::toBookDto)
+                .toList();
+
+        return UserWithBooksDto.builder()
+                .id(user.id())
+                .fullName(user.fullName())
+                .title(user.title())
+                .age(user.age())
+                .version(user.version())
+                .books(books)
+                .build();
+    }
+
+    private static UserRow toUserRow(long id, UserDto userDto, long version) {
+        return new UserRow(id, userDto.getFullName(), userDto.getTitle(), userDto.getAge(), version);
+    }
+
+    private static UserDto toUserDto(UserRow user) {
+        if (user == null) {
+            return null;
+        }
+
+        return UserDto.builder()
+                .id(user.id())
+                .fullName(user.fullName())
+                .title(user.title())
+                .age(user.age())
+                .version(user.version())
+                .build();
+    }
+}
@@ -1,91 +1,150 @@
 package com.edu.ulab.app.service.impl;
 
+import com.edu.ulab.app.dto.UpsertResult;
 import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.dto.UserWithBooksDto;
 import com.edu.ulab.app.mapper.UserRowMapper;
+import com.edu.ulab.app.mapper.UserWithBooksRowMapper;
+import com.edu.ulab.app.metrics.SqlMetrics;
+import com.edu.ulab.app.repository.SequenceIdAllocator;
+import com.edu.ulab.app.search.BookWordIndex;
 import com.edu.ulab.app.service.UserService;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 
 import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "user-book.backend", havingValue = "jdbc", matchIfMissing = true)
+@Timed(value = "userbook.service", extraTags = {"backend", "jdbc"})
 public class UserServiceImplTemplate implements UserService {
     private final JdbcTemplate jdbcTemplate;
     private final UserRowMapper userRowMapper;
+    private final UserWithBooksRowMapper userWithBooksRowMapper;
+    private final SqlMetrics sqlMetrics;
+    private final SequenceIdAllocator sequenceIdAllocator;
+    private final BookWordIndex bookWordIndex;
 
-    public UserServiceImplTemplate(JdbcTemplate jdbcTemplate, UserRowMapper userRowMapper) {
+    public UserServiceImplTemplate(JdbcTemplate jdbcTemplate,
+                                   UserRowMapper userRowMapper,
+                                   UserWithBooksRowMapper userWithBooksRowMapper,
+                                   SqlMetrics sqlMetrics,
+                                   SequenceIdAllocator sequenceIdAllocator,
+                                   BookWordIndex bookWordIndex) {
         this.jdbcTemplate = jdbcTemplate;
         this.userRowMapper = userRowMapper;
+        this.userWithBooksRowMapper = userWithBooksRowMapper;
+        this.sqlMetrics = sqlMetrics;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+        this.bookWordIndex = bookWordIndex;
     }
 
     /**
      * Create user by user dto.
-     * Creating a user and saving it to a database with a unique identifier.
+     * Creating a user and saving it to a database with a unique identifier from the blocks of PERSON_SEQ.
      *
      * @param userDto data for create user.
      * @return UserDto user dto with ID.
      */
     @Override
     public UserDto createUser(UserDto userDto) {
-        log.info("Got create user by user DTO: {}", userDto);
-        final String INSERT_SQL = "INSERT INTO PERSON(FULL_NAME, TITLE, AGE) VALUES (?,?,?)";
+        log.debug("Got create user by user DTO: {}", userDto);
+        final String INSERT_SQL = "INSERT INTO PERSON(ID, FULL_NAME, TITLE, AGE) VALUES (?,?,?,?)";
 
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(
-                connection -> {
-                    PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[]{"id"});
-                    ps.setString(1, userDto.getFullName());
-                    ps.setString(2, userDto.getTitle());
-                    ps.setLong(3, userDto.getAge());
+        userDto.setId(sequenceIdAllocator.nextPersonId());
+        sqlMetrics.record("insert_person", () -> jdbcTemplate.update(INSERT_SQL,
+                userDto.getId(), userDto.getFullName(), userDto.getTitle(), userDto.getAge()));
+        log.debug("Created user: {}", userDto);
 
-                    return ps;
-                }, keyHolder);
+        return userDto;
+    }
 
-        userDto.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
-        log.info("Created user: {}", userDto);
+    /**
+     * Create users by list of user dto.
+     * IDs from the blocks of PERSON_SEQ are set to the user dto and all users are inserted with one JDBC batch.
+     *
+     * @param userDtos data for create users.
+     * @return List<UserDto> user dto list with IDs in the same order as userDtos.
+     */
+    @Override
+    public List<UserDto> createUsers(List<UserDto> userDtos) {
+        log.debug("Got create users by user DTO list, size: {}", userDtos.size());
+        final String INSERT_SQL = "INSERT INTO PERSON(ID, FULL_NAME, TITLE, AGE) VALUES (?,?,?,?)";
 
-        return userDto;
+        if (userDtos.isEmpty()) {
+            return userDtos;
+        }
+
+        userDtos.forEach(userDto -> userDto.setId(sequenceIdAllocator.nextPersonId()));
+        sqlMetrics.record("batch_insert_person", () -> jdbcTemplate.batchUpdate(INSERT_SQL, userDtos, userDtos.size(),
+                (ps, userDto) -> {
+                    ps.setLong(1, userDto.getId());
+                    ps.setString(2, userDto.getFullName());
+                    ps.setString(3, userDto.getTitle());
+                    ps.setLong(4, userDto.getAge());
+                }));
+        log.debug("Created users: {}", userDtos);
+
+        return userDtos;
     }
 
     /**
      * Update user by user dto.
-     * If the updated user is not in the database, then a new one is created.
+     * If the updated user is not in the database, then a new one is created with an ID from the blocks of PERSON_SEQ.
+     * The existence check and the write are done by one MERGE statement, so the ID for the insert is taken
+     * before the statement and is skipped when the user is updated.
      *
      * @param userDto user dto for update.
-     * @return UserDto updated or created user dto.
+     * @return UpsertResult<UserDto> updated or created user dto and whether it was created.
      */
     @Override
-    public UserDto updateUser(UserDto userDto) {
-        log.info("Got update user by user DTO: {}", userDto);
-        final String UPDATE_SQL = "UPDATE PERSON SET FULL_NAME = ?, TITLE = ?, AGE = ? WHERE ID = ?";
+    public UpsertResult<UserDto> updateUser(UserDto userDto) {
+        log.debug("Got update user by user DTO: {}", userDto);
+        final String UPSERT_SQL = "MERGE INTO PERSON P USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), "
+                + "CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), CAST(? AS INTEGER))) "
+                + "S(ID, NEW_ID, FULL_NAME, TITLE, AGE) "
+                + "ON P.ID = S.ID "
+                + "WHEN MATCHED THEN UPDATE SET FULL_NAME = S.FULL_NAME, TITLE = S.TITLE, AGE = S.AGE "
+                + "WHEN NOT MATCHED THEN INSERT (ID, FULL_NAME, TITLE, AGE) VALUES (S.NEW_ID, S.FULL_NAME, S.TITLE, S.AGE)";
         final Long userId = userDto.getId();
+        final long newUserId = sequenceIdAllocator.nextPersonId();
 
-        if (userId != null && getUserById(userId) != null) {
-            jdbcTemplate.update(connection -> {
-                PreparedStatement ps = connection.prepareStatement(UPDATE_SQL);
-                ps.setString(1, userDto.getFullName());
-                ps.setString(2, userDto.getTitle());
-                ps.setLong(3, userDto.getAge());
-                ps.setLong(4, userId);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        sqlMetrics.record("upsert_person", () -> jdbcTemplate.update(
+                connection -> {
+                    PreparedStatement ps =
+                            connection.prepareStatement(UPSERT_SQL, new String[]{"id"});
+                    ps.setObject(1, userId);
+                    ps.setLong(2, newUserId);
+                    ps.setString(3, userDto.getFullName());
+                    ps.setString(4, userDto.getTitle());
+                    ps.setLong(5, userDto.getAge());
 
-                return ps;
-            });
-            log.info("Updated user with id: {}", userId);
-            log.info("Updated user data: {}", userDto);
+                    return ps;
+                },
+                keyHolder));
 
-            return userDto;
+        long savedId = Objects.requireNonNull(keyHolder.getKey()).longValue();
+        boolean inserted = savedId == newUserId;
+        userDto.setId(savedId);
+        if (inserted) {
+            log.debug("No user with the required id was found. Therefore, a new user was created: {}", userDto);
         } else {
-            UserDto createdUser = createUser(userDto);
-            log.info("No user with the required id was found. Therefore, a new user was created: {}", createdUser);
-
-            return createdUser;
+            log.debug("Updated user data: {}", userDto);
         }
+
+        return new UpsertResult<>(userDto, inserted);
     }
 
     /**
@@ -96,39 +155,210 @@ public class UserServiceImplTemplate implements UserService {
      */
     @Override
     public UserDto getUserById(Long id) {
-        log.info("Wants get user by user id: {}", id);
+        log.debug("Wants get user by user id: {}", id);
         final String GET_SQL = "SELECT * FROM PERSON WHERE ID = ?";
 
         UserDto userDto = null;
-        List<UserDto> users = jdbcTemplate.query(GET_SQL, ps -> ps.setLong(1, id), userRowMapper);
+        List<UserDto> users = sqlMetrics.record("select_person_by_id",
+                () -> jdbcTemplate.query(GET_SQL, ps -> ps.setLong(1, id), userRowMapper));
 
         if (!users.isEmpty()) {
             userDto = users.get(0);
         }
 
-        log.info("Received user: {}", userDto);
+        log.debug("Received user: {}", userDto);
 
         return userDto;
     }
 
+    /**
+     * Getting a user with all his books by user ID with one PERSON LEFT JOIN BOOK query.
+     * Rows are mapped in one pass by the grouping handler of UserWithBooksRowMapper.
+     *
+     * @param id user ID.
+     * @return UserWithBooksDto user with books ordered by ID, null if the user not found in the database.
+     */
+    @Override
+    public UserWithBooksDto getUserWithBooksById(Long id) {
+        log.debug("Wants get user with books by user id: {}", id);
+        final String GET_USER_WITH_BOOKS_SQL = UserWithBooksRowMapper.SELECT_USER_WITH_BOOKS + " WHERE P.ID = ? ORDER BY B.ID";
+
+        UserWithBooksDto[] userWithBooks = {null};
+        UserWithBooksRowMapper.GroupingRowCallbackHandler groupingHandler =
+                userWithBooksRowMapper.groupingHandler(user -> userWithBooks[0] = user);
+        sqlMetrics.record("select_person_with_book_by_id", () -> {
+            jdbcTemplate.query(GET_USER_WITH_BOOKS_SQL, ps -> ps.setLong(1, id), groupingHandler);
+
+            return null;
+        });
+        groupingHandler.finish();
+        log.debug("Received user with books: {}", userWithBooks[0]);
+
+        return userWithBooks[0];
+    }
+
+    /**
+     * Getting users by IDs with one query.
+     *
+     * @param ids user IDs.
+     * @return List<UserDto> found users in the order of ID, absent IDs are skipped.
+     */
+    @Override
+    public List<UserDto> findUsersByIds(Collection<Long> ids) {
+        log.debug("Wants get users by user ids: {}", ids);
+        final String GET_BY_IDS_SQL = "SELECT * FROM PERSON WHERE ID IN ("
+                + String.join(",", Collections.nCopies(ids.size(), "?")) + ") ORDER BY ID";
+
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        List<UserDto> users = sqlMetrics.record("select_person_by_ids",
+                () -> jdbcTemplate.query(GET_BY_IDS_SQL, userRowMapper, ids.toArray()));
+
+        log.debug("Received users: {}", users);
+        return users;
+    }
+
+    /**
+     * Getting a page of users ordered by ID with IDs greater than afterId.
+     * SQL query seeks by the primary key, so the page cost doesn't depend on the page depth.
+     *
+     * @param afterId ID of the last user of the previous page, 0 for the first page.
+     * @param limit maximum number of users on the page.
+     * @return List<UserDto> users of the page.
+     */
+    @Override
+    public List<UserDto> findUsersAfterId(long afterId, int limit) {
+        log.debug("Wants get {} users after user id: {}", limit, afterId);
+        final String GET_PAGE_SQL = "SELECT * FROM PERSON WHERE ID > ? ORDER BY ID LIMIT ?";
+
+        List<UserDto> users = sqlMetrics.record("select_person_page",
+                () -> jdbcTemplate.query(GET_PAGE_SQL, ps -> {
+                    ps.setLong(1, afterId);
+                    ps.setInt(2, limit);
+                }, userRowMapper));
+
+        log.debug("Received users: {}", users);
+        return users;
+    }
+
+    /**
+     * Getting a version of the user by its ID without reading the user.
+     *
+     * @param id user ID.
+     * @return Long version of the user, null if the user not found in the database.
+     */
+    @Override
+    public Long getUserVersion(Long id) {
+        log.debug("Wants get version of user with id: {}", id);
+        final String GET_VERSION_SQL = "SELECT VERSION FROM PERSON WHERE ID = ?";
+
+        List<Long> versions = sqlMetrics.record("select_person_version",
+                () -> jdbcTemplate.queryForList(GET_VERSION_SQL, Long.class, id));
+        Long version = versions.isEmpty() ? null : versions.get(0);
+        log.debug("Received version of user: {}", version);
+
+        return version;
+    }
+
+    /**
+     * Incrementing the version of the user after a change of the user or his books.
+     * The row of the user stays locked until the end of the transaction, so concurrent updates are serialized.
+     *
+     * @param id user ID.
+     * @param expectedVersion current version of the user known to the client, null to increment any version.
+     * @return boolean whether the version was incremented, false if no user or the version is other than expected.
+     */
+    @Override
+    public boolean incrementUserVersion(Long id, Long expectedVersion) {
+        log.debug("Wants increment version of user with id: {}, expected version: {}", id, expectedVersion);
+        final String INCREMENT_VERSION_SQL = "UPDATE PERSON SET VERSION = VERSION + 1 WHERE ID = ?";
+        final String INCREMENT_EXPECTED_VERSION_SQL = INCREMENT_VERSION_SQL + " AND VERSION = ?";
+
+        int updatedCount = sqlMetrics.record("increment_person_version", () -> expectedVersion == null
+                ? jdbcTemplate.update(INCREMENT_VERSION_SQL, id)
+                : jdbcTemplate.update(INCREMENT_EXPECTED_VERSION_SQL, id, expectedVersion));
+        log.debug("Incremented versions of users: {}", updatedCount);
+
+        return updatedCount > 0;
+    }
+
     /**
      * Deleting a user from the database by its ID.
      * If there is no user with this ID, then nothing happens.
      *
      * @param id user ID.
+     * @return int number of deleted users, 0 or 1.
      */
     @Override
-    public void deleteUserById(Long id) {
-        log.info("Got delete user by user id: {}", id);
+    public int deleteUserById(Long id) {
+        log.debug("Got delete user by user id: {}", id);
         final String DELETE_SQL = "DELETE FROM PERSON WHERE ID = ?";
 
-        jdbcTemplate.update(connection -> {
+        int deletedCount = sqlMetrics.record("delete_person_by_id", () -> jdbcTemplate.update(connection -> {
             PreparedStatement ps = connection.prepareStatement(DELETE_SQL);
             ps.setLong(1, id);
 
             return ps;
+        }));
+        bookWordIndex.removeBooksOfUsers(List.of(id));
+
+        log.debug("Deleted {} users with id: {}", deletedCount, id);
+        return deletedCount;
+    }
+
+    /**
+     * Deleting users from the database by IDs with one query, their books are deleted by the database cascade.
+     * Absent IDs are skipped.
+     *
+     * @param ids user IDs.
+     * @return int number of deleted users.
+     */
+    @Override
+    public int deleteUsersByIds(Collection<Long> ids) {
+        log.debug("Got delete users by user ids: {}", ids);
+        final String DELETE_BY_IDS_SQL = "DELETE FROM PERSON WHERE ID IN ("
+                + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        int deletedCount = sqlMetrics.record("delete_person_by_ids",
+                () -> jdbcTemplate.update(DELETE_BY_IDS_SQL, ids.toArray()));
+        bookWordIndex.removeBooksOfUsers(ids);
+
+        log.debug("Deleted {} users", deletedCount);
+        return deletedCount;
+    }
+
+    /**
+     * Passing all users with their books to the consumer one by one.
+     * Users and books are read with one join query ordered by user ID with a row callback and a fetch size,
+     * so the result set is not collected to a list and only the books of the current user are held in memory.
+     *
+     * @param consumer consumer of users with books.
+     */
+    @Override
+    public void forEachUserWithBooks(Consumer<UserWithBooksDto> consumer) {
+        log.debug("Wants get all users with books");
+        final String GET_ALL_USERS_WITH_BOOKS_SQL = UserWithBooksRowMapper.SELECT_USER_WITH_BOOKS + " ORDER BY P.ID, B.ID";
+        final int FETCH_SIZE = 1000;
+
+        UserWithBooksRowMapper.GroupingRowCallbackHandler groupingHandler = userWithBooksRowMapper.groupingHandler(consumer);
+        sqlMetrics.record("select_all_person_with_book", () -> {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(GET_ALL_USERS_WITH_BOOKS_SQL);
+                ps.setFetchSize(FETCH_SIZE);
+
+                return ps;
+            }, groupingHandler);
+
+            return null;
         });
+        groupingHandler.finish();
 
-        log.info("User was deleted with id: {}", id);
+        log.debug("Received all users with books");
     }
 }
@@ -0,0 +1,60 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.facade.BookSearchFacade;
+import com.edu.ulab.app.web.async.RequestExecutor;
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.edu.ulab.app.web.response.BookPageResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.constraints.Pattern;
+
+import static com.edu.ulab.app.web.constant.WebConstant.REQUEST_ID_PATTERN;
+import static com.edu.ulab.app.web.constant.WebConstant.RQID;
+
+@Slf4j
+@RestController
+@RequestMapping(value = WebConstant.VERSION_URL + "/book",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+public class BookController {
+    private final BookSearchFacade bookSearchFacade;
+    private final RequestExecutor requestExecutor;
+
+    public BookController(BookSearchFacade bookSearchFacade,
+                          RequestExecutor requestExecutor) {
+        this.bookSearchFacade = bookSearchFacade;
+        this.requestExecutor = requestExecutor;
+    }
+
+    @GetMapping(value = "/search")
+    @Operation(
+            summary = "Search books by author or title, match prefix - the field starts with the text, "
+                    + "match words - the field contains all words of the text.",
+            responses = {
+                    @ApiResponse(description = "Books of the page and cursor of the next page",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = BookPageResponse.class)
+                            )
+                    )
+            }
+    )
+    public Object searchBooks(@RequestParam(required = false) String author,
+                              @RequestParam(required = false) String title,
+                              @RequestParam(defaultValue = "prefix") String match,
+                              @RequestParam(required = false) String cursor,
+                              @RequestParam(defaultValue = "20") int limit,
+                              @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        return requestExecutor.execute(() -> {
+            BookPageResponse response = bookSearchFacade.searchBooks(author, title, match, cursor, limit);
+            log.debug("Response with page of books, size: {}, next cursor: {}", response.getBooks().size(), response.getNextCursor());
+
+            return response;
+        });
+    }
+}
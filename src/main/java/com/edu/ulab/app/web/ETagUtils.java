@@ -0,0 +1,65 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.constant.ErrorMessageTextConstants;
+import com.edu.ulab.app.exception.InvalidRequestDataException;
+import com.edu.ulab.app.exception.PreconditionFailedException;
+
+/**
+ * ETag of the user is the version of the user, for example "3".
+ */
+public final class ETagUtils {
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+
+    private ETagUtils() {
+    }
+
+    public static String toETag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Checking the If-None-Match header, weak ETags are compared as strong ones.
+     * @param ifNoneMatch value of the If-None-Match header, a list of ETags or *.
+     * @param version current version of the user.
+     * @return boolean whether the client has the current version.
+     */
+    public static boolean matchesAny(String ifNoneMatch, long version) {
+        String eTag = toETag(version);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals(ANY) || trimmed.equals(eTag) || trimmed.equals(WEAK_PREFIX + eTag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Parsing of the version from the If-Match header.
+     * If-Match uses the strong comparison, so a weak ETag never matches the user.
+     * @param ifMatch value of the If-Match header with one ETag or *.
+     * @return Long expected version of the user, null for * or a missing header.
+     * @throws InvalidRequestDataException if the header is not an ETag of the user.
+     * @throws PreconditionFailedException if the ETag is weak.
+     */
+    public static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals(ANY)) {
+            return null;
+        }
+
+        String eTag = ifMatch.trim();
+        if (eTag.startsWith(WEAK_PREFIX)) {
+            throw new PreconditionFailedException("Weak ETag can't match the user: " + eTag);
+        }
+        try {
+            if (eTag.length() < 2 || !eTag.startsWith("\"") || !eTag.endsWith("\"")) {
+                throw new NumberFormatException(eTag);
+            }
+            return Long.parseLong(eTag.substring(1, eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestDataException(ErrorMessageTextConstants.INCORRECT_ETAG);
+        }
+    }
+}
@@ -1,18 +1,34 @@
 package com.edu.ulab.app.web;
 
+import com.edu.ulab.app.dto.UserWithBooksDto;
 import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.service.IdempotencyService;
+import com.edu.ulab.app.web.async.RequestExecutor;
 import com.edu.ulab.app.web.constant.WebConstant;
 import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.UserBookBulkResponse;
 import com.edu.ulab.app.web.response.UserBookResponse;
+import com.edu.ulab.app.web.response.UserBulkDeleteResponse;
+import com.edu.ulab.app.web.response.UserMultiGetResponse;
+import com.edu.ulab.app.web.response.UserPageResponse;
+import com.edu.ulab.app.web.stream.UserBookNdjsonExporter;
+import com.edu.ulab.app.web.stream.UserBookNdjsonImporter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.Pattern;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 import static com.edu.ulab.app.web.constant.WebConstant.REQUEST_ID_PATTERN;
 import static com.edu.ulab.app.web.constant.WebConstant.RQID;
@@ -23,27 +39,58 @@ import static com.edu.ulab.app.web.constant.WebConstant.RQID;
         produces = MediaType.APPLICATION_JSON_VALUE)
 public class UserController {
     private final UserDataFacade userDataFacade;
+    private final UserBookNdjsonImporter userBookNdjsonImporter;
+    private final UserBookNdjsonExporter userBookNdjsonExporter;
+    private final RequestExecutor requestExecutor;
+    private final IdempotencyService idempotencyService;
 
-    public UserController(UserDataFacade userDataFacade) {
+    public UserController(UserDataFacade userDataFacade,
+                          UserBookNdjsonImporter userBookNdjsonImporter,
+                          UserBookNdjsonExporter userBookNdjsonExporter,
+                          RequestExecutor requestExecutor,
+                          IdempotencyService idempotencyService) {
         this.userDataFacade = userDataFacade;
+        this.userBookNdjsonImporter = userBookNdjsonImporter;
+        this.userBookNdjsonExporter = userBookNdjsonExporter;
+        this.requestExecutor = requestExecutor;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping(value = "/create")
-    @Operation(summary = "Create user book row.",
+    @Operation(summary = "Create user book row, a repeated request with the same rqid gets the response of the first one.",
             responses = {
                     @ApiResponse(description = "User book",
                             content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
                                     schema = @Schema(implementation = UserBookResponse.class)))})
-    public UserBookResponse createUserWithBooks(@RequestBody UserBookRequest request,
-                                                @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
-        UserBookResponse response = userDataFacade.createUserWithBooks(request);
-        log.info("Response with created user and his books: {}", response);
-        return response;
+    public Object createUserWithBooks(@RequestBody UserBookRequest request,
+                                      @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        return requestExecutor.execute(() -> {
+            UserBookResponse response = idempotencyService.executeOnce(requestId,
+                    () -> userDataFacade.createUserWithBooks(request));
+            log.debug("Response with created user and his books: {}", response);
+            return response;
+        });
+    }
+
+    @PostMapping(value = "/create/bulk",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Create user book rows from newline delimited JSON.",
+            responses = {
+                    @ApiResponse(description = "Newline delimited user ID and his books ID or error message for every row",
+                            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = UserBookBulkResponse.class)))})
+    public void createUsersWithBooks(InputStream requestBody,
+                                     HttpServletResponse response,
+                                     @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) throws IOException {
+        log.debug("Bulk create of users and their books");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        userBookNdjsonImporter.importUsersWithBooks(requestBody, response.getOutputStream());
     }
 
     @PutMapping(value = "/update/{userId}")
     @Operation(
-            summary = "Update user and his books.",
+            summary = "Update user and his books, with If-Match only the existing user of the same version (any version for *) is updated.",
             responses = {
                     @ApiResponse(description = "User ID and his books ID",
                             content = @Content(
@@ -53,17 +100,24 @@ public class UserController {
                     )
             }
     )
-    public UserBookResponse updateUserWithBooks(@RequestBody UserBookRequest request,
-                                                @PathVariable Long userId,
-                                                @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
-        UserBookResponse response = userDataFacade.updateUserWithBooks(request, userId);
-        log.info("Response with updated user and his books: {}", response);
-        return response;
+    public Object updateUserWithBooks(@RequestBody UserBookRequest request,
+                                      @PathVariable Long userId,
+                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                      @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        Long expectedVersion = ETagUtils.parseVersion(ifMatch);
+        return requestExecutor.execute(() -> {
+            userDataFacade.awaitQueuedBooks(userId);
+            UserBookResponse response = userDataFacade.updateUserWithBooks(request, userId, expectedVersion, ifMatch != null);
+            log.debug("Response with updated user and his books: {}", response);
+            return ResponseEntity.ok()
+                    .eTag(ETagUtils.toETag(response.getVersion()))
+                    .body(response);
+        });
     }
 
     @GetMapping(value = "/get/{userId}")
     @Operation(
-            summary = "Get user ID and his books ID.",
+            summary = "Get user ID and his books ID, with If-None-Match the not modified user isn't returned.",
             responses = {
                     @ApiResponse(description = "User ID and his books ID",
                             content = @Content(
@@ -73,12 +127,117 @@ public class UserController {
                     )
             }
     )
-    public UserBookResponse getUserWithBooks(@PathVariable Long userId,
-                                             @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
-        UserBookResponse response = userDataFacade.getUserWithBooks(userId);
-        log.info("Response with user and his books: {}", response);
+    public Object getUserWithBooks(@PathVariable Long userId,
+                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                   @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        return requestExecutor.execute(() -> {
+            ResponseEntity<UserBookResponse> notModified = notModifiedResponse(userId, ifNoneMatch);
+            if (notModified != null) {
+                return notModified;
+            }
+
+            UserBookResponse response = userDataFacade.getUserWithBooks(userId);
+            log.debug("Response with user and his books: {}", response);
+
+            return ResponseEntity.ok()
+                    .eTag(ETagUtils.toETag(response.getVersion()))
+                    .body(response);
+        });
+    }
+
+    @GetMapping(value = "/get/{userId}", params = "expand=books")
+    @Operation(
+            summary = "Get user with title, author and page count of his books, with If-None-Match the not modified user isn't returned.",
+            responses = {
+                    @ApiResponse(description = "User with his books",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = UserWithBooksDto.class)
+                            )
+                    )
+            }
+    )
+    public Object getUserWithBookDetails(@PathVariable Long userId,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                         @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        return requestExecutor.execute(() -> {
+            ResponseEntity<UserWithBooksDto> notModified = notModifiedResponse(userId, ifNoneMatch);
+            if (notModified != null) {
+                return notModified;
+            }
+
+            UserWithBooksDto response = userDataFacade.getUserWithBookDetails(userId);
+            log.debug("Response with user and details of his books: {}", response);
+
+            return ResponseEntity.ok()
+                    .eTag(ETagUtils.toETag(response.getVersion()))
+                    .body(response);
+        });
+    }
+
+    @GetMapping(value = "/get")
+    @Operation(
+            summary = "Get users ID and their books ID by the list of user ID.",
+            responses = {
+                    @ApiResponse(description = "Found users with their books ID and ID of not found users",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = UserMultiGetResponse.class)
+                            )
+                    )
+            }
+    )
+    public Object getUsersWithBooks(@RequestParam List<Long> ids,
+                                    @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        return requestExecutor.execute(() -> {
+            UserMultiGetResponse response = userDataFacade.getUsersWithBooks(ids);
+            log.debug("Response with users: {}, not found user ids: {}", response.getUsers().size(), response.getNotFoundIds());
+
+            return response;
+        });
+    }
+
+    @GetMapping(value = "/list")
+    @Operation(
+            summary = "Get page of users ordered by ID.",
+            responses = {
+                    @ApiResponse(description = "Users of the page and cursor of the next page",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = UserPageResponse.class)
+                            )
+                    )
+            }
+    )
+    public Object listUsers(@RequestParam(required = false) String cursor,
+                            @RequestParam(defaultValue = "50") int limit,
+                            @RequestParam(defaultValue = "false") boolean includeBooks,
+                            @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        return requestExecutor.execute(() -> {
+            UserPageResponse response = userDataFacade.listUsers(cursor, limit, includeBooks);
+            log.debug("Response with page of users, size: {}, next cursor: {}", response.getUsers().size(), response.getNextCursor());
 
-        return response;
+            return response;
+        });
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+            summary = "Export all users with their books as newline delimited JSON.",
+            responses = {
+                    @ApiResponse(description = "Newline delimited users with their books",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = UserWithBooksDto.class)
+                            )
+                    )
+            }
+    )
+    public void exportUsersWithBooks(HttpServletResponse response,
+                                     @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) throws IOException {
+        log.debug("Export of all users and their books");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        userBookNdjsonExporter.exportUsersWithBooks(response.getOutputStream());
     }
 
     @DeleteMapping(value = "/delete/{userId}")
@@ -92,9 +251,57 @@ public class UserController {
                     )
             }
     )
-    public void deleteUserWithBooks(@PathVariable Long userId,
-                                    @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
-        log.info("Delete user and his books:  userId {}", userId);
-        userDataFacade.deleteUserWithBooks(userId);
+    public Object deleteUserWithBooks(@PathVariable Long userId,
+                                      @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        log.debug("Delete user and his books:  userId {}", userId);
+        return requestExecutor.execute(() -> {
+            userDataFacade.deleteUserWithBooks(userId);
+            return null;
+        });
+    }
+
+    @DeleteMapping(value = "/delete")
+    @Operation(
+            summary = "Delete users and their books by the list of user ID.",
+            responses = {
+                    @ApiResponse(description = "Number of deleted users",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = UserBulkDeleteResponse.class)
+                            )
+                    )
+            }
+    )
+    public Object deleteUsersWithBooks(@RequestParam List<Long> ids,
+                                       @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        log.debug("Delete users and their books: userIds {}", ids);
+        return requestExecutor.execute(() -> {
+            UserBulkDeleteResponse response = userDataFacade.deleteUsersWithBooks(ids);
+            log.debug("Response with deleted users: {}", response.getDeletedCount());
+
+            return response;
+        });
+    }
+
+    /**
+     * Answer of the conditional get when the user isn't modified, only the version of the user is read.
+     * @param userId user ID.
+     * @param ifNoneMatch If-None-Match header, null if absent.
+     * @return ResponseEntity<T> 304 response with ETag, null if the user should be returned.
+     */
+    private <T> ResponseEntity<T> notModifiedResponse(Long userId, String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+
+        Long version = userDataFacade.getUserVersion(userId);
+        if (version == null || !ETagUtils.matchesAny(ifNoneMatch, version)) {
+            return null;
+        }
+
+        log.debug("User with id {} is not modified, version: {}", userId, version);
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(ETagUtils.toETag(version))
+                .build();
     }
 }
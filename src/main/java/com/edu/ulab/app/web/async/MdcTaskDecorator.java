@@ -0,0 +1,34 @@
+package com.edu.ulab.app.web.async;
+
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Map;
+
+/**
+ * Copies the MDC of the submitting thread, for example the request ID, to the executor thread for the time of the task.
+ */
+public class MdcTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        Map<String, String> contextMap = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previousContextMap = MDC.getCopyOfContextMap();
+            setContextMap(contextMap);
+            try {
+                runnable.run();
+            } finally {
+                setContextMap(previousContextMap);
+            }
+        };
+    }
+
+    private static void setContextMap(Map<String, String> contextMap) {
+        if (contextMap == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(contextMap);
+        }
+    }
+}
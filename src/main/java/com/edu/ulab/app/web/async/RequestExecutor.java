@@ -0,0 +1,51 @@
+package com.edu.ulab.app.web.async;
+
+import com.edu.ulab.app.config.AsyncConfig;
+import com.edu.ulab.app.config.UserBookAsyncProperties;
+import com.edu.ulab.app.metrics.RequestTimings;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+@Component
+public class RequestExecutor {
+    private final ThreadPoolTaskExecutor executor;
+    private final boolean asyncEnabled;
+
+    public RequestExecutor(@Qualifier(AsyncConfig.USER_BOOK_TASK_EXECUTOR) ThreadPoolTaskExecutor executor,
+                           UserBookAsyncProperties properties) {
+        this.executor = executor;
+        this.asyncEnabled = properties.isEnabled();
+    }
+
+    /**
+     * Execution of the request handling.
+     * In the async mode the handling runs on the user book executor and the request thread is released,
+     * the stage timings of the request are recorded on the executor thread,
+     * otherwise it runs on the request thread and its result is returned as it is.
+     * Spring MVC selects the handler of the returned value by its runtime type, so only the async mode
+     * pays for the async start and the second dispatch of the request.
+     * @param handling request handling, for example a facade call.
+     * @return Object result of the handling in the sync mode, CompletableFuture of the result in the async mode.
+     * @throws TaskRejectedException if the executor queue is full.
+     */
+    public <T> Object execute(Supplier<T> handling) {
+        if (!asyncEnabled) {
+            return handling.get();
+        }
+
+        RequestTimings timings = RequestTimings.current();
+        return CompletableFuture.supplyAsync(() -> {
+            RequestTimings previous = RequestTimings.bind(timings);
+            try {
+                return handling.get();
+            } finally {
+                RequestTimings.bind(previous);
+            }
+        }, executor);
+    }
+}
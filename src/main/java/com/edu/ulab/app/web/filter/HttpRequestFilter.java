@@ -1,30 +1,199 @@
 package com.edu.ulab.app.web.filter;
 
+import com.edu.ulab.app.metrics.RequestTimings;
+import com.edu.ulab.app.web.handler.ServerTimingResponseBodyAdvice;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
+import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
 public class HttpRequestFilter extends OncePerRequestFilter {
+    public static final String REQUEST_TIMER = "userbook.http.request";
+    private static final String FAILED_ATTRIBUTE = HttpRequestFilter.class.getName() + ".FAILED";
+
+    private final MeterRegistry meterRegistry;
+    private final double summarySampleRate;
+    private final long slowRequestThresholdNanos;
+
+    public HttpRequestFilter(MeterRegistry meterRegistry,
+                             @Value("${user-book.logging.summary-sample-rate:1.0}") double summarySampleRate,
+                             @Value("${user-book.logging.slow-request-threshold:500ms}") Duration slowRequestThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.summarySampleRate = summarySampleRate;
+        this.slowRequestThresholdNanos = slowRequestThreshold.toNanos();
+    }
+
     @Override
     protected void doFilterInternal(final HttpServletRequest request,
                                     final HttpServletResponse response,
                                     final FilterChain filterChain) throws ServletException, IOException {
         String requestId = request.getHeader("rqid");
         MDC.put("requestId", requestId);
-        log.info("RequestId : {}", requestId);
+        if (isAsyncDispatch(request)) {
+            doFilterAsyncDispatch(request, response, filterChain);
+            return;
+        }
+
+        log.debug("RequestId : {}", requestId);
+        RequestTimings timings = new RequestTimings();
+        request.setAttribute(RequestTimings.ATTRIBUTE, timings);
+        RequestTimings previousTimings = RequestTimings.bind(timings);
         try {
             filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            request.setAttribute(FAILED_ATTRIBUTE, Boolean.TRUE);
+            throw e;
         } finally {
+            RequestTimings.bind(previousTimings);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionAsyncListener(requestId, timings));
+            } else {
+                setServerTimingHeader(response, timings);
+                completeRequest(request, response, requestId, timings);
+            }
             MDC.remove("requestId");
         }
     }
+
+    /**
+     * Writing of the async request result, for example of the CompletableFuture returned by the controller.
+     * @param request async dispatched request.
+     * @param response response of the request.
+     * @param filterChain filter chain.
+     */
+    private void doFilterAsyncDispatch(HttpServletRequest request,
+                                       HttpServletResponse response,
+                                       FilterChain filterChain) throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            request.setAttribute(FAILED_ATTRIBUTE, Boolean.TRUE);
+            throw e;
+        } finally {
+            if (request.getAttribute(RequestTimings.ATTRIBUTE) instanceof RequestTimings timings) {
+                setServerTimingHeader(response, timings);
+            }
+            MDC.remove("requestId");
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    /**
+     * Adding the Server-Timing header to the response without body,
+     * the header of the response with body is added by {@link ServerTimingResponseBodyAdvice}.
+     * @param response response of the request.
+     * @param timings stage timings of the request.
+     */
+    private void setServerTimingHeader(HttpServletResponse response, RequestTimings timings) {
+        if (!response.isCommitted() && !response.containsHeader(ServerTimingResponseBodyAdvice.SERVER_TIMING_HEADER)) {
+            response.setHeader(ServerTimingResponseBodyAdvice.SERVER_TIMING_HEADER, timings.toServerTiming());
+        }
+    }
+
+    /**
+     * Recording of the completed request.
+     * The time is recorded to the userbook.http.request histogram tagged by the endpoint pattern, method and status.
+     * A request slower than the threshold is logged with the stage breakdown, other requests get one summary line
+     * instead of the request and response payloads. Server errors are always logged,
+     * other summaries are sampled with the configured rate.
+     * @param request completed request.
+     * @param response response of the request.
+     * @param requestId request ID from the rqid header.
+     * @param timings stage timings of the request.
+     */
+    private void completeRequest(HttpServletRequest request, HttpServletResponse response, String requestId, RequestTimings timings) {
+        long elapsedNanos = timings.elapsedNanos();
+        int status = resolveStatus(request, response);
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Timer.builder(REQUEST_TIMER)
+                .description("Requests handled by the application")
+                .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                .tag("method", request.getMethod())
+                .tag("status", Integer.toString(status))
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        if (elapsedNanos >= slowRequestThresholdNanos) {
+            log.warn("Slow request rqid={} {} {} status={} {}", requestId, request.getMethod(), request.getRequestURI(),
+                    status, timings);
+            return;
+        }
+
+        if (status < HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+                && ThreadLocalRandom.current().nextDouble() >= summarySampleRate) {
+            return;
+        }
+
+        log.info("Request rqid={} {} {} status={} time={} ms", requestId, request.getMethod(), request.getRequestURI(),
+                status, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    /**
+     * Status of the completed request. An exception not mapped by the exception handler leaves the filter
+     * before the container sets the error status, such a request is recorded as 500.
+     * @param request completed request.
+     * @param response response of the request.
+     * @return int status of the response.
+     */
+    private static int resolveStatus(HttpServletRequest request, HttpServletResponse response) {
+        int status = response.getStatus();
+        if (status < HttpServletResponse.SC_BAD_REQUEST
+                && (request.getAttribute(FAILED_ATTRIBUTE) != null || request.getAttribute(RequestDispatcher.ERROR_EXCEPTION) != null)) {
+            return HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        }
+        return status;
+    }
+
+    /**
+     * Recording of the async request on completion, the filter returns before the request is completed.
+     */
+    private class CompletionAsyncListener implements AsyncListener {
+        private final String requestId;
+        private final RequestTimings timings;
+
+        CompletionAsyncListener(String requestId, RequestTimings timings) {
+            this.requestId = requestId;
+            this.timings = timings;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            completeRequest((HttpServletRequest) event.getSuppliedRequest(),
+                    (HttpServletResponse) event.getSuppliedResponse(), requestId, timings);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
 }
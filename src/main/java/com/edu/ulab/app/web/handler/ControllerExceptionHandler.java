@@ -1,10 +1,16 @@
 package com.edu.ulab.app.web.handler;
 
+import com.edu.ulab.app.constant.ErrorMessageTextConstants;
 import com.edu.ulab.app.exception.InvalidRequestDataException;
 import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.exception.PreconditionFailedException;
+import com.edu.ulab.app.exception.RequestInProgressException;
+import com.edu.ulab.app.exception.TooManyRequestsException;
 import com.edu.ulab.app.web.response.BaseWebResponse;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -29,6 +35,36 @@ public class ControllerExceptionHandler {
                 .body(new BaseWebResponse(createErrorMessage(exc)));
     }
 
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<BaseWebResponse> handlePreconditionFailedException(@NonNull final PreconditionFailedException exc) {
+        log.error(exc.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(new BaseWebResponse(createErrorMessage(exc)));
+    }
+
+    @ExceptionHandler(RequestInProgressException.class)
+    public ResponseEntity<BaseWebResponse> handleRequestInProgressException(@NonNull final RequestInProgressException exc) {
+        log.warn(exc.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new BaseWebResponse(exc.getMessage()));
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<BaseWebResponse> handleTaskRejectedException(@NonNull final TaskRejectedException exc) {
+        log.error(exc.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new BaseWebResponse(ErrorMessageTextConstants.REQUEST_QUEUE_IS_FULL));
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<BaseWebResponse> handleTooManyRequestsException(@NonNull final TooManyRequestsException exc) {
+        log.warn(exc.getMessage());
+        long retryAfterSeconds = Math.max(1, (exc.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(new BaseWebResponse(exc.getMessage()));
+    }
+
     private String createErrorMessage(Exception exception) {
         final String message = exception.getMessage();
         log.error(ExceptionHandlerUtils.buildErrorMessage(exception));
@@ -1,11 +1,20 @@
 package com.edu.ulab.app.web.request;
 
+import com.edu.ulab.app.admission.RowCounted;
 import lombok.Data;
 
 import java.util.List;
 
 @Data
-public class UserBookRequest {
+public class UserBookRequest implements RowCounted {
     private UserRequest userRequest;
     private List<BookRequest> bookRequests;
+
+    /**
+     * @return int the user and his books.
+     */
+    @Override
+    public int rowCount() {
+        return 1 + (bookRequests == null ? 0 : bookRequests.size());
+    }
 }
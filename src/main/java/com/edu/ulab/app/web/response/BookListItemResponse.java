@@ -0,0 +1,14 @@
+package com.edu.ulab.app.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BookListItemResponse {
+    private Long bookId;
+    private Long userId;
+    private String title;
+    private String author;
+    private long pageCount;
+}
@@ -0,0 +1,17 @@
+package com.edu.ulab.app.web.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserBookBulkResponse {
+    private Long line;
+    private Long userId;
+    private List<Long> booksIdList;
+    private String errorMessage;
+}
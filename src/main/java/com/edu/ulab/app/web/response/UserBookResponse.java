@@ -1,5 +1,6 @@
 package com.edu.ulab.app.web.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Builder;
 import lombok.Data;
 
@@ -10,4 +11,6 @@ import java.util.List;
 public class UserBookResponse {
     private Long userId;
     private List<Long> booksIdList;
+    @JsonIgnore
+    private Long version;
 }
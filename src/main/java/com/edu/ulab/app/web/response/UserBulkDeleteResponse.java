@@ -0,0 +1,10 @@
+package com.edu.ulab.app.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class UserBulkDeleteResponse {
+    private int deletedCount;
+}
@@ -0,0 +1,18 @@
+package com.edu.ulab.app.web.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserListItemResponse {
+    private Long userId;
+    private String fullName;
+    private String title;
+    private int age;
+    private List<Long> booksIdList;
+}
@@ -0,0 +1,13 @@
+package com.edu.ulab.app.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class UserMultiGetResponse {
+    private List<UserBookResponse> users;
+    private List<Long> notFoundIds;
+}
@@ -0,0 +1,15 @@
+package com.edu.ulab.app.web.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class UserPageResponse {
+    private List<UserListItemResponse> users;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+}
@@ -0,0 +1,56 @@
+package com.edu.ulab.app.web.stream;
+
+import com.edu.ulab.app.dto.UserWithBooksDto;
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+public class UserBookNdjsonExporter {
+    private final UserDataFacade userDataFacade;
+    private final ObjectWriter userWriter;
+
+    public UserBookNdjsonExporter(UserDataFacade userDataFacade, ObjectMapper objectMapper) {
+        this.userDataFacade = userDataFacade;
+        this.userWriter = objectMapper.writerFor(UserWithBooksDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Export of all users with their books as newline delimited JSON.
+     * Every user is written to the output as soon as it is read from the database,
+     * so the whole data set is never held in memory.
+     * @param output stream for newline delimited JSON with UserWithBooksDto records.
+     * @throws IOException if the output can't be written.
+     */
+    public void exportUsersWithBooks(OutputStream output) throws IOException {
+        AtomicLong exportedCount = new AtomicLong();
+        try {
+            userDataFacade.exportUsersWithBooks(user -> {
+                try {
+                    userWriter.writeValue(output, user);
+                    output.write('\n');
+                    exportedCount.incrementAndGet();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        output.flush();
+
+        log.info("Exported {} users with books", exportedCount.get());
+    }
+}
@@ -0,0 +1,143 @@
+package com.edu.ulab.app.web.stream;
+
+import com.edu.ulab.app.constant.ErrorMessageTextConstants;
+import com.edu.ulab.app.exception.TooManyRequestsException;
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.UserBookBulkResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+@Slf4j
+@Component
+public class UserBookNdjsonImporter {
+    private final UserDataFacade userDataFacade;
+    private final ObjectReader requestReader;
+    private final ObjectWriter responseWriter;
+    private final int chunkSize;
+
+    public UserBookNdjsonImporter(UserDataFacade userDataFacade,
+                                  ObjectMapper objectMapper,
+                                  @Value("${user-book.bulk.chunk-size:500}") int chunkSize) {
+        this.userDataFacade = userDataFacade;
+        this.requestReader = objectMapper.readerFor(UserBookRequest.class);
+        this.responseWriter = objectMapper.writerFor(UserBookBulkResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Create users and their books from newline delimited UserBookRequest records.
+     * Records are read from the input one by one and created by chunks, every chunk in its own transaction.
+     * A result for every record is written to the output as newline delimited UserBookBulkResponse
+     * and the output is flushed after every chunk, so no more than one chunk is held in memory.
+     * @param input newline delimited JSON with UserBookRequest records.
+     * @param output stream for newline delimited JSON with UserBookBulkResponse records.
+     * @throws IOException if the input can't be read or the output can't be written.
+     */
+    public void importUsersWithBooks(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<ImportRecord> chunk = new ArrayList<>(chunkSize);
+        long lineNumber = 0;
+        long importedCount = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+
+            chunk.add(parseRecord(lineNumber, line));
+            if (chunk.size() == chunkSize) {
+                importedCount += importChunk(chunk, output);
+                chunk.clear();
+            }
+        }
+        importedCount += importChunk(chunk, output);
+        log.info("Imported {} users with books from {} lines", importedCount, lineNumber);
+    }
+
+    private ImportRecord parseRecord(long lineNumber, String line) {
+        try {
+            return new ImportRecord(lineNumber, requestReader.readValue(line), null);
+        } catch (JsonProcessingException e) {
+            log.debug("Incorrect user book request on line {}: {}", lineNumber, e.getOriginalMessage());
+            return new ImportRecord(lineNumber, null, ErrorMessageTextConstants.INCORRECT_JSON);
+        }
+    }
+
+    /**
+     * Create parsed records of the chunk and write results for all records of the chunk.
+     * @return int number of created users.
+     */
+    private int importChunk(List<ImportRecord> chunk, OutputStream output) throws IOException {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+
+        List<UserBookRequest> requests = chunk.stream()
+                .filter(importRecord -> importRecord.errorMessage() == null)
+                .map(ImportRecord::request)
+                .toList();
+
+        List<UserBookBulkResponse> responses;
+        try {
+            responses = userDataFacade.createUsersWithBooks(requests);
+        } catch (DataAccessException e) {
+            log.error("User book chunk was not saved: {}", e.getMessage());
+            responses = chunkErrorResponses(requests, ErrorMessageTextConstants.CHUNK_WAS_NOT_SAVED);
+        } catch (TooManyRequestsException e) {
+            log.warn("User book chunk was rejected: {}", e.getMessage());
+            responses = chunkErrorResponses(requests, e.getMessage());
+        }
+
+        int createdCount = 0;
+        Iterator<UserBookBulkResponse> createdResponses = responses.iterator();
+        for (ImportRecord importRecord : chunk) {
+            UserBookBulkResponse response = importRecord.errorMessage() == null
+                    ? createdResponses.next()
+                    : UserBookBulkResponse.builder().errorMessage(importRecord.errorMessage()).build();
+            response.setLine(importRecord.line());
+            if (response.getUserId() != null) {
+                createdCount++;
+            }
+
+            responseWriter.writeValue(output, response);
+            output.write('\n');
+        }
+        output.flush();
+
+        return createdCount;
+    }
+
+    private static List<UserBookBulkResponse> chunkErrorResponses(List<UserBookRequest> requests, String errorMessage) {
+        return requests.stream()
+                .map(request -> UserBookBulkResponse.builder()
+                        .errorMessage(errorMessage)
+                        .build())
+                .toList();
+    }
+
+    private record ImportRecord(long line, UserBookRequest request, String errorMessage) {
+    }
+}
@@ -1,4 +1,3 @@
-DROP TABLE IF EXISTS PERSON;
 CREATE TABLE IF NOT EXISTS PERSON
 (
     ID BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -7,7 +6,6 @@ CREATE TABLE IF NOT EXISTS PERSON
     AGE INTEGER
 );
 
-DROP TABLE IF EXISTS BOOK;
 CREATE TABLE IF NOT EXISTS BOOK
 (
     ID BIGINT AUTO_INCREMENT PRIMARY KEY,
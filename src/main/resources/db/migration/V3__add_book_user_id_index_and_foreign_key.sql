@@ -0,0 +1,4 @@
+CREATE INDEX IF NOT EXISTS IDX_BOOK_USER_ID ON BOOK (USER_ID);
+
+ALTER TABLE BOOK
+    ADD CONSTRAINT FK_BOOK_USER_ID FOREIGN KEY (USER_ID) REFERENCES PERSON (ID) ON DELETE CASCADE;
@@ -0,0 +1,9 @@
+CREATE TABLE IF NOT EXISTS IDEMPOTENCY_KEY
+(
+    RQID       VARCHAR(255) NOT NULL PRIMARY KEY,
+    USER_ID    BIGINT,
+    BOOKS_ID   VARCHAR,
+    CREATED_AT TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS IDX_IDEMPOTENCY_KEY_CREATED_AT ON IDEMPOTENCY_KEY (CREATED_AT);
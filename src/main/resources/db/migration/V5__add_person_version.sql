@@ -0,0 +1,2 @@
+ALTER TABLE PERSON
+    ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT 0 NOT NULL;
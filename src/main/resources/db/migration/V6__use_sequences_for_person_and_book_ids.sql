@@ -0,0 +1,9 @@
+-- IDs are allocated in blocks of 50 (pooled-lo): by Hibernate for the JPA backend and by SequenceIdAllocator for the JdbcTemplate backend,
+-- every value of the sequence starts a block, so the columns have no default and every insert gives the ID.
+-- Values start after the default data.
+CREATE SEQUENCE IF NOT EXISTS PERSON_SEQ START WITH 10000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS BOOK_SEQ START WITH 10000 INCREMENT BY 50;
+
+ALTER TABLE PERSON ALTER COLUMN ID DROP IDENTITY;
+
+ALTER TABLE BOOK ALTER COLUMN ID DROP IDENTITY;
@@ -0,0 +1,8 @@
+-- Lower case author and title for the case insensitive prefix search, the indexes give the order of the pages by key and ID.
+ALTER TABLE BOOK
+    ADD COLUMN IF NOT EXISTS AUTHOR_KEY VARCHAR (255) GENERATED ALWAYS AS (LOWER(AUTHOR));
+ALTER TABLE BOOK
+    ADD COLUMN IF NOT EXISTS TITLE_KEY VARCHAR (255) GENERATED ALWAYS AS (LOWER(TITLE));
+
+CREATE INDEX IF NOT EXISTS IDX_BOOK_AUTHOR_KEY_ID ON BOOK (AUTHOR_KEY, ID);
+CREATE INDEX IF NOT EXISTS IDX_BOOK_TITLE_KEY_ID ON BOOK (TITLE_KEY, ID);
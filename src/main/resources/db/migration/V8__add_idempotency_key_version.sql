@@ -0,0 +1,3 @@
+-- Version of the created user, so the replayed response has the same version as the response of the first request.
+ALTER TABLE IDEMPOTENCY_KEY
+    ADD COLUMN IF NOT EXISTS VERSION BIGINT;
@@ -0,0 +1,68 @@
+package com.edu.ulab.app.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The adaptive write limit under a mix of deletes, creates with books and import chunks:
+ * the latencies of different operations and sizes don't lower the limit, a growing latency of one operation does.
+ */
+class ConcurrencyLimiterTest {
+    private static final int LIMIT = 6;
+    private static final int MIN_LIMIT = 1;
+    private static final int MAX_LIMIT = 10;
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(LIMIT, true, MIN_LIMIT, MAX_LIMIT, LATENCY_TOLERANCE);
+
+    @Test
+    void mixedWriteLatenciesWithoutLoadDontLowerLimit() {
+        for (int i = 0; i < 3000; i++) {
+            completeMixedWrites();
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(MAX_LIMIT);
+    }
+
+    @Test
+    void growingLatencyOfOneOperationLowersLimit() {
+        for (int i = 0; i < 100; i++) {
+            completeMixedWrites();
+        }
+
+        for (int i = 0; i < 30; i++) {
+            complete("createUserWithBooks", millis(3) * 3, 3);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(MIN_LIMIT);
+    }
+
+    /**
+     * Completing a delete of one user, creates with 1 and 20 books and an import chunk of 500 users with books
+     * while half of the limit is in use.
+     */
+    private void completeMixedWrites() {
+        complete("deleteUserWithBooks", millis(1), 1);
+        complete("createUserWithBooks", millis(2), 2);
+        complete("createUserWithBooks", millis(12), 21);
+        complete("createUsersWithBooks", millis(400), 1500);
+    }
+
+    private void complete(String operation, long latencyNanos, int rows) {
+        int concurrentCalls = (limiter.getLimit() + 1) / 2;
+        for (int i = 0; i < concurrentCalls; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+        limiter.release(operation, latencyNanos, rows);
+        for (int i = 1; i < concurrentCalls; i++) {
+            limiter.release();
+        }
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
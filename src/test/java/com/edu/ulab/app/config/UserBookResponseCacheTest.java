@@ -0,0 +1,95 @@
+package com.edu.ulab.app.config;
+
+import com.edu.ulab.app.web.response.UserBookResponse;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A read of a user interleaved with an update of the user never leaves the response of the old version in the cache.
+ * The reader puts the response it read, the writer commits the new version and evicts the user after commit.
+ */
+class UserBookResponseCacheTest {
+    private static final long USER_ID = 1001L;
+
+    private final AtomicLong committedVersion = new AtomicLong(1);
+    private Runnable beforeVersionRead = () -> {
+    };
+    private final UserBookResponseCache cache = new UserBookResponseCache(CacheConfig.USER_BOOKS_CACHE,
+            Caffeine.newBuilder().build(), userId -> {
+                beforeVersionRead.run();
+                return committedVersion.get();
+            });
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void responseOfCurrentVersionIsCached() {
+        cache.put(USER_ID, response(1));
+
+        assertThat(cache.get(USER_ID, UserBookResponse.class)).isEqualTo(response(1));
+    }
+
+    @Test
+    void readerPutAfterEvictionOfWriterIsRemoved() {
+        UserBookResponse readResponse = response(1);
+        commitUpdate();
+
+        cache.put(USER_ID, readResponse);
+
+        assertThat(cache.get(USER_ID)).isNull();
+    }
+
+    @Test
+    void writerCommittingBetweenPutAndVersionCheckRemovesReaderPut() {
+        beforeVersionRead = this::commitUpdate;
+
+        cache.put(USER_ID, response(1));
+
+        assertThat(cache.get(USER_ID)).isNull();
+    }
+
+    @Test
+    void readerPutBeforeCommitOfWriterIsEvictedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evict(USER_ID);
+
+        cache.put(USER_ID, response(1));
+        assertThat(cache.get(USER_ID, UserBookResponse.class)).isEqualTo(response(1));
+
+        committedVersion.set(2);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(cache.get(USER_ID)).isNull();
+    }
+
+    /**
+     * Update of the user outside of a transaction: the new version is committed and the user is evicted at once.
+     */
+    private void commitUpdate() {
+        committedVersion.set(2);
+        cache.evict(USER_ID);
+    }
+
+    private static UserBookResponse response(long version) {
+        return UserBookResponse.builder()
+                .userId(USER_ID)
+                .booksIdList(List.of(2002L, 3003L))
+                .version(version)
+                .build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.edu.ulab.app.facade;
+
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.request.UserRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two back-to-back REPLACE updates of one user with write-behind:
+ * the second update starts after the commit of the first one, before its books are queued,
+ * and still replaces them, so only the books of the second update are left.
+ */
+@SpringBootTest(properties = {
+        "user-book.write-behind.enabled=true",
+        "user-book.update-mode=replace",
+        "user-book.admission.enabled=false"})
+class BookWriteBehindQueueTest {
+    private static final long SECOND_UPDATE_WAIT_MILLIS = 1000;
+
+    @Autowired
+    private UserDataFacade userDataFacade;
+    @Autowired
+    private BookWriteBehindQueue bookWriteBehindQueue;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void secondReplaceAfterCommitOfFirstReplacesItsQueuedBooks() throws Exception {
+        Long userId = userDataFacade.createUserWithBooks(request("created")).getUserId();
+        bookWriteBehindQueue.awaitWritten(userId);
+
+        CompletableFuture<UserBookResponse> secondUpdate = new CompletableFuture<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int completionStatus) {
+                    CompletableFuture.runAsync(() -> {
+                        userDataFacade.awaitQueuedBooks(userId);
+                        secondUpdate.complete(userDataFacade.updateUserWithBooks(request("second", "second more"),
+                                userId, null, false));
+                    }).exceptionally(e -> {
+                        secondUpdate.completeExceptionally(e);
+                        return null;
+                    });
+                    awaitQuietly(secondUpdate);
+                }
+            });
+            userDataFacade.updateUserWithBooks(request("first", "first more"), userId, null, false);
+        });
+
+        List<Long> secondBookIds = secondUpdate.get(10, TimeUnit.SECONDS).getBooksIdList();
+        bookWriteBehindQueue.awaitWritten(userId);
+
+        assertThat(bookService.findAllBooksIdByUserId(userId)).containsExactlyInAnyOrderElementsOf(secondBookIds);
+    }
+
+    /**
+     * Giving the second update the time to complete, it waits for the books of the first one if the fix works.
+     */
+    private static void awaitQuietly(CompletableFuture<UserBookResponse> update) {
+        try {
+            update.get(SECOND_UPDATE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // the second update waits for the books of the first update, which are queued after this callback,
+            // its failure is checked by the test
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static UserBookRequest request(String... bookTitles) {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setFullName("Ann Lee");
+        userRequest.setTitle("reader");
+        userRequest.setAge(30);
+
+        UserBookRequest request = new UserBookRequest();
+        request.setUserRequest(userRequest);
+        request.setBookRequests(Arrays.stream(bookTitles).map(title -> {
+            BookRequest book = new BookRequest();
+            book.setTitle(title);
+            book.setAuthor("author");
+            book.setPageCount(100);
+            return book;
+        }).toList());
+        return request;
+    }
+}
@@ -0,0 +1,160 @@
+package com.edu.ulab.app.repository;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.mapper.BookMapperImpl;
+import com.edu.ulab.app.metrics.SqlMetrics;
+import com.edu.ulab.app.search.BookWordIndex;
+import com.edu.ulab.app.service.impl.BookServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Books created by the JPA backend get IDs from the pooled-lo blocks of BOOK_SEQ,
+ * so Hibernate sends their inserts in JDBC batches of hibernate.jdbc.batch_size (50).
+ */
+@DataJpaTest(properties = "user-book.backend=jpa")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BookServiceImpl.class, BookMapperImpl.class, BookWordIndex.class, SqlMetrics.class})
+class BookBatchInsertTest {
+    private static final int JDBC_BATCH_SIZE = 50;
+    private static final String INSERT_BOOK_PREFIX = "insert into book";
+
+    @Autowired
+    private BookServiceImpl bookService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private StatementCountingDataSource dataSource;
+
+    @BeforeEach
+    void resetCounts() {
+        dataSource.reset();
+    }
+
+    @Test
+    void insertsOfBooksAreSentInBatches() {
+        int booksCount = 120;
+        List<BookDto> bookDtos = new ArrayList<>(booksCount);
+        for (int i = 0; i < booksCount; i++) {
+            BookDto bookDto = new BookDto();
+            bookDto.setUserId(1001L);
+            bookDto.setTitle("title " + i);
+            bookDto.setAuthor("author " + i);
+            bookDto.setPageCount(100 + i);
+            bookDtos.add(bookDto);
+        }
+
+        List<BookDto> books = bookService.createBooks(bookDtos);
+        entityManager.flush();
+
+        int expectedBatches = (booksCount + JDBC_BATCH_SIZE - 1) / JDBC_BATCH_SIZE;
+        assertThat(dataSource.getBatchExecutions()).isEqualTo(expectedBatches);
+        assertThat(dataSource.getSingleExecutions()).isZero();
+        assertThat(books).hasSize(booksCount);
+        assertThat(books).allSatisfy(book -> assertThat(book.getId()).isGreaterThanOrEqualTo(10000L));
+    }
+
+    @TestConfiguration
+    static class CountingConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)
+                            ? new StatementCountingDataSource(dataSource)
+                            : bean;
+                }
+            };
+        }
+    }
+
+    /**
+     * Counts the executions of the statements prepared for the inserts of books.
+     */
+    static class StatementCountingDataSource extends DelegatingDataSource {
+        private final AtomicInteger batchExecutions = new AtomicInteger();
+        private final AtomicInteger singleExecutions = new AtomicInteger();
+
+        StatementCountingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        int getBatchExecutions() {
+            return batchExecutions.get();
+        }
+
+        int getSingleExecutions() {
+            return singleExecutions.get();
+        }
+
+        void reset() {
+            batchExecutions.set(0);
+            singleExecutions.set(0);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")
+                                && ((String) args[0]).toLowerCase(Locale.ROOT).startsWith(INSERT_BOOK_PREFIX)) {
+                            return countingStatement(statement);
+                        }
+                        return result;
+                    });
+        }
+
+        private PreparedStatement countingStatement(PreparedStatement statement) {
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("executeBatch")) {
+                            batchExecutions.incrementAndGet();
+                        } else if (method.getName().startsWith("execute")) {
+                            singleExecutions.incrementAndGet();
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
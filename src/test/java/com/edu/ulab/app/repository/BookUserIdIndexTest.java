@@ -0,0 +1,28 @@
+package com.edu.ulab.app.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The books of a user are read by the index on BOOK.USER_ID from the Flyway migrations instead of a scan of BOOK.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class BookUserIdIndexTest {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void selectBookIdsByUserIdUsesIndex() {
+        final String EXPLAIN_SQL = "EXPLAIN SELECT ID FROM BOOK WHERE USER_ID = ?";
+
+        String plan = jdbcTemplate.queryForObject(EXPLAIN_SQL, String.class, 1001L);
+
+        assertThat(plan).contains("IDX_BOOK_USER_ID");
+    }
+}
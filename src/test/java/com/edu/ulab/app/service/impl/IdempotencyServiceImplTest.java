@@ -0,0 +1,67 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.config.UserBookIdempotencyProperties;
+import com.edu.ulab.app.exception.RequestInProgressException;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A repeated request waits for the first request with the same rqid only up to the repeat timeout.
+ */
+class IdempotencyServiceImplTest {
+    private static final String REQUEST_ID = "rq-1";
+
+    @Test
+    void repeatedRequestOfHangingFirstRequestIsRejectedAfterTimeout() throws Exception {
+        UserBookIdempotencyProperties properties = new UserBookIdempotencyProperties();
+        properties.setRepeatTimeout(Duration.ofMillis(100));
+        IdempotencyServiceImpl idempotencyService = new IdempotencyServiceImpl(properties, new SimpleMeterRegistry());
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<UserBookResponse> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.executeOnce(REQUEST_ID, () -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    return response();
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> idempotencyService.executeOnce(REQUEST_ID, IdempotencyServiceImplTest::response))
+                .isInstanceOf(RequestInProgressException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(response());
+        assertThat(idempotencyService.executeOnce(REQUEST_ID, () -> {
+            throw new AssertionError("Create of a repeated request");
+        })).isEqualTo(response());
+    }
+
+    private static UserBookResponse response() {
+        return UserBookResponse.builder()
+                .userId(1001L)
+                .booksIdList(List.of(2002L))
+                .version(0L)
+                .build();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}